@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal closed loop load generator, used by {@code compare-threads.sh} when wrk is not installed.
+ * Each connection is a virtual thread sending the next request as soon as the previous answer arrives, like wrk.
+ * It takes the options of wrk the script uses and prints the lines of wrk the script reads, so that the two
+ * outputs are parsed the same way. Like wrk, a request times out after 2 seconds and is then counted as a socket
+ * error, and the answers with a status of 400 or more are counted as non-2xx.
+ * <p>
+ * Usage: {@code java load/LoadGenerator.java -c <connections> -d <duration> [-H <header>] <url>}, with Java 21.
+ */
+public class LoadGenerator {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    public static void main(String[] args) throws Exception {
+        int connections = 10;
+        Duration duration = Duration.ofSeconds(10);
+        List<String> headers = new ArrayList<>();
+        String url = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c" -> connections = Integer.parseInt(args[++i]);
+                case "-d" -> duration = parseDuration(args[++i]);
+                case "-H" -> headers.add(args[++i]);
+                case "-t" -> i++;
+                case "--latency" -> {
+                }
+                default -> url = args[i];
+            }
+        }
+        if (url == null) {
+            System.err.println("Usage: java LoadGenerator.java -c <connections> -d <duration> [-H <header>] <url>");
+            System.exit(1);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).GET();
+        for (String header : headers) {
+            int colon = header.indexOf(':');
+            builder.header(header.substring(0, colon).trim(), header.substring(colon + 1).trim());
+        }
+        HttpRequest request = builder.build();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+
+        AtomicLong non2xx = new AtomicLong();
+        AtomicLong timeouts = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+        long end = System.nanoTime() + duration.toNanos();
+
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            threads[c] = Thread.ofVirtual().start(() -> {
+                long[] own = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (count == own.length)
+                            own = Arrays.copyOf(own, count * 2);
+                        own[count++] = System.nanoTime() - start;
+                        if (response.statusCode() >= 400)
+                            non2xx.incrementAndGet();
+                    } catch (HttpTimeoutException e) {
+                        timeouts.incrementAndGet();
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                latencies[connection] = own;
+                counts[connection] = count;
+            });
+        }
+        long started = System.nanoTime();
+        for (Thread thread : threads)
+            thread.join();
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+
+        System.out.printf(Locale.ROOT, "Running %s test @ %s%n", duration, url);
+        System.out.printf(Locale.ROOT, "  %d connections%n", connections);
+        System.out.println("  Latency Distribution");
+        for (int percentile : new int[]{50, 75, 90, 99})
+            System.out.printf(Locale.ROOT, "     %d%%   %s%n", percentile, format(percentile(all, percentile)));
+        System.out.printf(Locale.ROOT, "  %d requests in %.2fs%n", total, seconds);
+        if (timeouts.get() > 0 || failures.get() > 0)
+            System.out.printf(Locale.ROOT, "  Socket errors: connect 0, read %d, write 0, timeout %d%n", failures.get(), timeouts.get());
+        if (non2xx.get() > 0)
+            System.out.printf(Locale.ROOT, "  Non-2xx or 3xx responses: %d%n", non2xx.get());
+        System.out.printf(Locale.ROOT, "Requests/sec: %.2f%n", total / seconds);
+    }
+
+    /**
+     * Parses a duration in the format of wrk, e.g. {@code 30s}, {@code 2m} or {@code 1h}.
+     */
+    private static Duration parseDuration(String value) {
+        long amount = Long.parseLong(value.replaceAll("[smh]$", ""));
+        return switch (value.charAt(value.length() - 1)) {
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> Duration.ofSeconds(amount);
+        };
+    }
+
+    /**
+     * Returns the latency in nanoseconds below which the given percentage of the sorted latencies are.
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0)
+            return 0;
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    /**
+     * Formats a latency in nanoseconds as wrk does, e.g. {@code 812.00us}, {@code 12.34ms} or {@code 1.20s}.
+     */
+    private static String format(long nanos) {
+        if (nanos < 1_000_000)
+            return String.format(Locale.ROOT, "%.2fus", nanos / 1e3);
+        if (nanos < 1_000_000_000)
+            return String.format(Locale.ROOT, "%.2fms", nanos / 1e6);
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+    }
+}
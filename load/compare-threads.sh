@@ -0,0 +1,83 @@
+#!/usr/bin/env bash
+# Compares the throughput of two deployments of the application, one per request mode
+# (requestVirtualThreads=false and requestVirtualThreads=true), with wrk, or with LoadGenerator.java on Java 21
+# when wrk is not installed. See load/README.md.
+#
+# Usage: load/compare-threads.sh <platform-url> <virtual-url> <identifier> <password>
+#   e.g. load/compare-threads.sh http://localhost:8080/tiw-platform http://localhost:8080/tiw-virtual user password
+#
+# Environment:
+#   CONNECTIONS  the concurrent connections of each run, default "16 64 256 1024"
+#   DURATION     the duration of each run, default 30s
+#   THREADS      the threads of wrk, default the number of cores
+#   PATHS        the pages loaded, default "/home"
+#   RESULTS      the directory of the outputs of wrk, default load/results
+#   JAVA         the java 21 of LoadGenerator.java, default java
+set -euo pipefail
+
+if [ $# -ne 4 ]; then
+    sed -n '2,7p' "$0" | sed 's/^# \{0,1\}//'
+    exit 1
+fi
+command -v curl > /dev/null || { echo "curl is required" >&2; exit 1; }
+
+PLATFORM_URL=${1%/}
+VIRTUAL_URL=${2%/}
+IDENTIFIER=$3
+PASSWORD=$4
+CONNECTIONS=${CONNECTIONS:-"16 64 256 1024"}
+DURATION=${DURATION:-30s}
+THREADS=${THREADS:-$(getconf _NPROCESSORS_ONLN)}
+PATHS=${PATHS:-/home}
+RESULTS=${RESULTS:-$(dirname "$0")/results}
+JAVA=${JAVA:-java}
+
+if command -v wrk > /dev/null; then
+    LOAD=(wrk)
+else
+    LOAD=("$JAVA" "$(dirname "$0")/LoadGenerator.java")
+fi
+
+mkdir -p "$RESULTS"
+
+# Logs in once and prints the Cookie header of the session: JSESSIONID, auth or sid depending on authMode.
+login() {
+    local jar
+    jar=$(mktemp)
+    curl -s -o /dev/null -c "$jar" --data-urlencode "identifier=$IDENTIFIER" --data-urlencode "password=$PASSWORD" "$1/login"
+    local cookie
+    cookie=$(awk '$6 == "JSESSIONID" || $6 == "auth" || $6 == "sid" { print $6 "=" $7 }' "$jar" | head -n 1)
+    rm -f "$jar"
+    if [ -z "$cookie" ]; then
+        echo "Cannot log in to $1" >&2
+        exit 1
+    fi
+    echo "Cookie: $cookie"
+}
+
+# Runs wrk and prints the requests per second, the 99th percentile latency, the non-2xx answers and the socket
+# errors, the requests that timed out or lost their connection.
+run() {
+    local mode=$1 url=$2 header=$3 connections=$4 path=$5
+    local output="$RESULTS/$mode-$connections-$(echo "$path" | tr -c 'a-zA-Z0-9\n' '_').txt"
+    # A short warm up, so that the JIT and the connection pool are ready.
+    "${LOAD[@]}" -t "$THREADS" -c "$connections" -d 5s -H "$header" "$url$path" > /dev/null
+    "${LOAD[@]}" -t "$THREADS" -c "$connections" -d "$DURATION" --latency -H "$header" "$url$path" > "$output"
+    local rps p99 non2xx errors
+    rps=$(awk '/^Requests\/sec/ { print $2 }' "$output")
+    p99=$(awk '$1 == "99%" { print $2 }' "$output")
+    non2xx=$(awk '/Non-2xx/ { print $5 }' "$output")
+    errors=$(awk -F '[ ,]+' '/Socket errors/ { print $5 + $7 + $9 + $11 }' "$output")
+    printf '%-9s %-20s %12s %12s %12s %10s %10s\n' "$mode" "$path" "$connections" "$rps" "$p99" "${non2xx:-0}" "${errors:-0}"
+}
+
+PLATFORM_COOKIE=$(login "$PLATFORM_URL")
+VIRTUAL_COOKIE=$(login "$VIRTUAL_URL")
+
+printf '%-9s %-20s %12s %12s %12s %10s %10s\n' mode path connections requests/s p99 non-2xx errors
+for path in $PATHS; do
+    for connections in $CONNECTIONS; do
+        run platform "$PLATFORM_URL" "$PLATFORM_COOKIE" "$connections" "$path"
+        run virtual "$VIRTUAL_URL" "$VIRTUAL_COOKIE" "$connections" "$path"
+    done
+done
@@ -0,0 +1,13 @@
+package it.polimi.tiw.beans;
+
+import it.polimi.tiw.enums.MoveOutcome;
+
+/**
+ * This class is the bean for the result of the move of a single document in a bulk move.
+ *
+ * @param documentId      the id of the document.
+ * @param fromSubFolderId the id of the subFolder of the document before the move, 0 if it was not found.
+ * @param outcome         the {@link MoveOutcome} of the move.
+ */
+public record DocumentMoveResult(int documentId, int fromSubFolderId, MoveOutcome outcome) {
+}
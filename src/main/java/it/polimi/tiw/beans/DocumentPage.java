@@ -0,0 +1,19 @@
+package it.polimi.tiw.beans;
+
+import java.util.List;
+
+/**
+ * This class is the bean for a page of the documents of a subfolder.
+ *
+ * @param documents the documents of the page.
+ * @param hasNext   true if there are other documents after the last one of the page.
+ */
+public record DocumentPage(List<Document> documents, boolean hasNext) {
+
+    /**
+     * @return the last document of the page, whose position is the start of the next page, or null if the page is empty.
+     */
+    public Document last() {
+        return documents.isEmpty() ? null : documents.get(documents.size() - 1);
+    }
+}
@@ -0,0 +1,18 @@
+package it.polimi.tiw.beans;
+
+/**
+ * This class is the bean for the position of a document in a listing sorted by a {@link it.polimi.tiw.enums.DocumentSort}.
+ * The next page starts right after it, whether or not the document is still in the subfolder.
+ *
+ * @param key the value the documents are sorted by, the creation date or the name of the document.
+ * @param id  the id of the document, which breaks ties between documents with the same key.
+ */
+public record DocumentPosition(Object key, int id) {
+
+    /**
+     * @return the value of the {@code after} parameter of the next page: the key, a comma and the id.
+     */
+    public String getValue() {
+        return key + "," + id;
+    }
+}
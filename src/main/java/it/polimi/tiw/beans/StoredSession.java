@@ -0,0 +1,10 @@
+package it.polimi.tiw.beans;
+
+/**
+ * This class is the bean for a session kept by a session store.
+ *
+ * @param user      the logged {@link User}.
+ * @param expiresAt the time in seconds after which the session is no longer valid.
+ */
+public record StoredSession(User user, long expiresAt) {
+}
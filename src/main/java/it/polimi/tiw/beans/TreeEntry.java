@@ -0,0 +1,12 @@
+package it.polimi.tiw.beans;
+
+/**
+ * This class is the bean for a row of the whole tree of a user: a folder with one of its subfolders and one of
+ * the documents of the subfolder.
+ *
+ * @param folder    the folder.
+ * @param subFolder the subfolder, null if the folder is empty.
+ * @param document  the document, null if the subfolder is empty.
+ */
+public record TreeEntry(Folder folder, SubFolder subFolder, Document document) {
+}
@@ -0,0 +1,10 @@
+package it.polimi.tiw.beans;
+
+/**
+ * This class is the bean for a user together with its stored password.
+ *
+ * @param user         the user.
+ * @param passwordHash the stored password of the user, hashed or legacy plain text.
+ */
+public record UserCredentials(User user, String passwordHash) {
+}
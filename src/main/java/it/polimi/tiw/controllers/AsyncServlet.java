@@ -0,0 +1,198 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.utils.AsyncCompletion;
+import it.polimi.tiw.utils.RequestExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Serial;
+import java.sql.SQLException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is the base of the controllers that run their requests on the {@link RequestExecutor}.
+ * <p>
+ * The container thread only starts the asynchronous processing and returns, while the DAO work and the rendering
+ * happen on a thread of the executor, which completes the {@link AsyncContext} once the response is written.
+ * A request that does not fit in the executor is answered with 503 and a {@code Retry-After} header, as is one
+ * still waiting in the queue when the queue timeout of the executor expires. The {@link AsyncContext} itself never
+ * times out: the container would answer and recycle a request whose thread is still writing it, so a running request
+ * always completes on its own thread, its statements bounded by the query timeout of the connection pool.
+ * Only a client that goes away makes the container complete the request first: what the thread then fails to write
+ * is logged at debug level, since nobody is left to read it.
+ * Subclasses must be declared with {@code asyncSupported = true}, otherwise their requests run on the container
+ * thread as usual.
+ */
+public abstract class AsyncServlet extends HttpServlet {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncServlet.class);
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    /**
+     * Runs the request on the {@link RequestExecutor} when it can be processed asynchronously.
+     *
+     * @param request  the {@link HttpServletRequest} of the client.
+     * @param response the {@link HttpServletResponse} to the client.
+     * @throws ServletException if the request cannot be handled.
+     * @throws IOException      if an input or output error occurs.
+     */
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        RequestExecutor executor = RequestExecutor.getInstance(getServletContext());
+        if (executor == null || !request.isAsyncSupported() || request.isAsyncStarted() || !runsAsync(request)) {
+            super.service(request, response);
+            return;
+        }
+
+        // The wrappers of the filters are kept, so that the compression and the asset URLs still apply.
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(0);
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                state.set(DONE);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                state.set(DONE);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        ScheduledFuture<?> expiry = executor.onQueueTimeout(() -> {
+            if (state.compareAndSet(QUEUED, DONE))
+                failQuietly(asyncContext, request, response, executor);
+        });
+        try {
+            executor.execute(() -> run(asyncContext, request, response, state, expiry));
+        } catch (RejectedExecutionException e) {
+            if (expiry != null)
+                expiry.cancel(false);
+            if (state.compareAndSet(QUEUED, DONE))
+                fail(asyncContext, response, executor, "The server is busy, try again later");
+        }
+    }
+
+    /**
+     * This method tells if a request is run on the {@link RequestExecutor}. Requests that do not wait for the
+     * database, as the ones that only render a form, can stay on the container thread and skip the hand-off.
+     *
+     * @param request the {@link HttpServletRequest} of the client.
+     * @return true if the request is run asynchronously, true by default.
+     */
+    protected boolean runsAsync(HttpServletRequest request) {
+        return true;
+    }
+
+    /**
+     * This method logs an error of the database that the controller answers with an error page.
+     *
+     * @param request the {@link HttpServletRequest} of the client.
+     * @param e       the {@link Exception} thrown by the DAO.
+     */
+    protected void logDatabaseError(HttpServletRequest request, Exception e) {
+        LoggerFactory.getLogger(getClass()).error("Database error on {} {}", request.getMethod(), request.getRequestURI(), e);
+    }
+
+    /**
+     * Runs a request on the thread of the executor and completes it.
+     *
+     * @param asyncContext the {@link AsyncContext} of the request.
+     * @param request      the {@link HttpServletRequest} of the client.
+     * @param response     the {@link HttpServletResponse} to the client.
+     * @param state        the state of the request, shared with its expiry.
+     * @param expiry       the expiry of the request in the queue, null if there is none.
+     */
+    private void run(AsyncContext asyncContext, HttpServletRequest request, HttpServletResponse response,
+                     AtomicInteger state, ScheduledFuture<?> expiry) {
+        if (expiry != null)
+            expiry.cancel(false);
+        // The request may have expired while waiting in the queue.
+        if (!state.compareAndSet(QUEUED, RUNNING))
+            return;
+        // Once the client is gone the container recycles the request, so it is described before it runs.
+        String target = request.getMethod() + " " + request.getRequestURI();
+        try {
+            super.service(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            if (state.get() != RUNNING) {
+                logger.debug("Client gone while processing {}", target, e);
+                return;
+            }
+            logger.error("Error while processing {}", target, e);
+            if (!response.isCommitted()) {
+                try {
+                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
+                } catch (IOException | IllegalStateException ignored) {
+                    // The client is gone, there is nobody to tell.
+                }
+            }
+        }
+        if (state.compareAndSet(RUNNING, DONE)) {
+            try {
+                AsyncCompletion.complete(asyncContext);
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Cannot complete {}", target, e);
+            }
+        }
+    }
+
+    /**
+     * Answers 503 to a request that has waited too long in the queue, on the thread of the timer.
+     *
+     * @param asyncContext the {@link AsyncContext} of the request.
+     * @param request      the {@link HttpServletRequest} of the client.
+     * @param response     the {@link HttpServletResponse} to the client.
+     * @param executor     the {@link RequestExecutor} of the application.
+     */
+    private static void failQuietly(AsyncContext asyncContext, HttpServletRequest request, HttpServletResponse response,
+                                    RequestExecutor executor) {
+        try {
+            fail(asyncContext, response, executor, "The server is busy, try again later");
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Cannot expire {} {}", request.getMethod(), request.getRequestURI(), e);
+        }
+    }
+
+    /**
+     * Answers 503 with a {@code Retry-After} header, if the response is not committed yet, and completes the request.
+     *
+     * @param asyncContext the {@link AsyncContext} of the request.
+     * @param response     the {@link HttpServletResponse} to the client.
+     * @param executor     the {@link RequestExecutor} of the application.
+     * @param message      the message of the error.
+     * @throws IOException if an input or output error occurs.
+     */
+    private static void fail(AsyncContext asyncContext, HttpServletResponse response, RequestExecutor executor,
+                             String message) throws IOException {
+        if (!response.isCommitted()) {
+            response.setHeader("Retry-After", String.valueOf(executor.getRetryAfter()));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, message);
+        }
+        AsyncCompletion.complete(asyncContext);
+    }
+}
@@ -4,27 +4,23 @@ import it.polimi.tiw.beans.User;
 import it.polimi.tiw.dao.FolderDAO;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 
-@WebServlet(name = "ContentManagement", value = "/content-management")
-public class ContentManagement extends HttpServlet {
-
-    /**
-     * {@link Connection} to the database.
-     */
-    private Connection connection;
+@WebServlet(name = "ContentManagement", value = "/content-management", asyncSupported = true)
+public class ContentManagement extends AsyncServlet {
 
     /**
      * {@link TemplateEngine} to render the template.
@@ -32,14 +28,11 @@ public class ContentManagement extends HttpServlet {
     private TemplateEngine templateEngine;
 
     /**
-     * Initialize the {@link Connection} to the database and the {@link TemplateEngine}.
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initialize the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -57,24 +50,21 @@ public class ContentManagement extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         try {
-            FolderDAO folderDAO = new FolderDAO(connection);
+            User user = UserSessions.getInstance(getServletContext()).getUser(req);
+            ContentVersions versions = ContentVersions.getInstance(getServletContext());
+            ContentVersions.Version tree = versions.tree(user.id());
+            if (ContentVersions.notModified(req, resp, versions.etag("content", user.id(), tree), tree.lastModified()))
+                return;
             final WebContext ctx = new WebContext(req, resp, req.getServletContext(), req.getLocale());
-            User user = (User) req.getSession().getAttribute("user");
-            ctx.setVariable("folders", folderDAO.getFoldersWithSubFolders(user.id()));
-            templateEngine.process(TemplatePages.CONTENT_MANAGEMENT.getValue(), ctx, resp.getWriter());
+            ctx.setVariable("folders", FolderTreeCache.getInstance(getServletContext()).get(user.id(), () -> {
+                try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+                    return new FolderDAO(connection).getFoldersWithSubFolders(user.id());
+                }
+            }));
+            TemplateHandler.processStreaming(templateEngine, TemplatePages.CONTENT_MANAGEMENT.getValue(), ctx, resp, getServletContext());
         } catch (SQLException e) {
+            logDatabaseError(req, e);
             resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while retrieving folders");
         }
     }
-
-    /**
-     * Closes the {@link Connection} to the database
-     */
-    @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
-    }
 }
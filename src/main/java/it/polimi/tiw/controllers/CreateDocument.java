@@ -7,42 +7,34 @@ import it.polimi.tiw.dao.DocumentDAO;
 import it.polimi.tiw.dao.SubFolderDAO;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
 import it.polimi.tiw.utils.InputValidator;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 
-@WebServlet(name = "CreateDocument", value = "/create-document")
-public class CreateDocument extends HttpServlet {
-    /**
-     * {@link Connection} to the database
-     */
-    private Connection connection;
-
+@WebServlet(name = "CreateDocument", value = "/create-document", asyncSupported = true)
+public class CreateDocument extends AsyncServlet {
     /**
      * {@link Connection} to render the template
      */
     private TemplateEngine templateEngine;
 
     /**
-     * Initializes the {@link Connection} to the database and the {@link TemplateEngine}
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initializes the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -59,7 +51,7 @@ public class CreateDocument extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        try {
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
             String subId = request.getParameter("subFolderId");
 
             if (subId == null || subId.isEmpty() || !InputValidator.isInt(subId, response)) {
@@ -68,11 +60,11 @@ public class CreateDocument extends HttpServlet {
             }
 
             int subFolderId = Integer.parseInt(subId);
-            SubFolderDAO subFolderDAO = new SubFolderDAO(this.connection);
-            User user = (User) request.getSession().getAttribute("user");
+            SubFolderDAO subFolderDAO = new SubFolderDAO(connection);
+            User user = UserSessions.getInstance(getServletContext()).getUser(request);
 
-            if (subFolderDAO.checkOwner(user.id(), subFolderId)) {
-                SubFolder subFolder = subFolderDAO.getSubFolder(subFolderId);
+            SubFolder subFolder = subFolderDAO.getOwnedSubFolder(user.id(), subFolderId);
+            if (subFolder != null) {
                 ServletContext servletContext = getServletContext();
                 final WebContext ctx = new WebContext(request, response, servletContext, request.getLocale());
                 ctx.setVariable("userRequest", 2);
@@ -83,6 +75,7 @@ public class CreateDocument extends HttpServlet {
         } catch (NullPointerException | NumberFormatException e) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid Parameters");
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
@@ -118,30 +111,22 @@ public class CreateDocument extends HttpServlet {
         if (!InputValidator.isInt(subFolderId, response))
             return;
         int subFolderIdInt = Integer.parseInt(subFolderId);
-        SubFolderDAO subFolderDAO = new SubFolderDAO(this.connection);
-        DocumentDAO documentDAO = new DocumentDAO(this.connection);
-        User user = (User) request.getSession().getAttribute("user");
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
 
-        try {
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            SubFolderDAO subFolderDAO = new SubFolderDAO(connection);
+            DocumentDAO documentDAO = new DocumentDAO(connection);
             if (subFolderDAO.checkOwner(user.id(), subFolderIdInt)) {
-                if (documentDAO.createDocument(name, format, summary, subFolderIdInt))
+                if (documentDAO.createDocument(name, format, summary, subFolderIdInt)) {
+                    ContentVersions.getInstance(getServletContext()).bumpSubFolder(subFolderIdInt);
                     response.sendRedirect(getServletContext().getContextPath() + "/home");
+                }
             } else response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
 
-    /**
-     * Closes the {@link Connection} to the database
-     */
-    @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
-    }
-
 
 }
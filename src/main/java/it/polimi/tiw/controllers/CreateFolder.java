@@ -4,14 +4,15 @@ import it.polimi.tiw.beans.User;
 import it.polimi.tiw.dao.FolderDAO;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -19,29 +20,22 @@ import java.io.Serial;
 import java.sql.Connection;
 import java.sql.SQLException;
 
-@WebServlet(name = "CreateFolder", value = "/create-folder")
-public class CreateFolder extends HttpServlet {
+@WebServlet(name = "CreateFolder", value = "/create-folder", asyncSupported = true)
+public class CreateFolder extends AsyncServlet {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    /**
-     * {@link Connection} to the database.
-     */
-    private Connection connection;
     /**
      * {@link TemplateEngine} to render the template.
      */
     private TemplateEngine templateEngine;
 
     /**
-     * Initialize the {@link Connection} to the database and the {@link TemplateEngine}.
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initialize the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -82,26 +76,26 @@ public class CreateFolder extends HttpServlet {
             return;
         }
         name = name.trim();
-        User user = (User) req.getSession().getAttribute("user");
-        try {
+        User user = UserSessions.getInstance(getServletContext()).getUser(req);
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
             FolderDAO folderDAO = new FolderDAO(connection);
-            if (folderDAO.createFolder(name, user.id()))
+            if (folderDAO.createFolder(name, user.id())) {
+                FolderTreeCache.getInstance(getServletContext()).invalidate(user.id());
+                ContentVersions.getInstance(getServletContext()).bumpTree(user.id());
                 resp.sendRedirect(getServletContext().getContextPath() + "/home");
-            else
+            } else
                 resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while creating folder");
         } catch (SQLException e) {
+            logDatabaseError(req, e);
             resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while creating folder");
         }
     }
 
     /**
-     * Close the {@link Connection} to the database.
+     * The form is rendered on the container thread, only its submission waits for the database.
      */
     @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
+    protected boolean runsAsync(HttpServletRequest request) {
+        return !request.getMethod().equals("GET");
     }
 }
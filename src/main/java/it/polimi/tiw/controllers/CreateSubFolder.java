@@ -6,15 +6,16 @@ import it.polimi.tiw.dao.FolderDAO;
 import it.polimi.tiw.dao.SubFolderDAO;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
 import it.polimi.tiw.utils.InputValidator;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -22,13 +23,8 @@ import java.sql.Connection;
 import java.sql.Date;
 import java.sql.SQLException;
 
-@WebServlet(name = "CreateSubFolder", value = "/create-subfolder")
-public class CreateSubFolder extends HttpServlet {
-
-    /**
-     * {@link Connection} to the database
-     */
-    private Connection connection;
+@WebServlet(name = "CreateSubFolder", value = "/create-subfolder", asyncSupported = true)
+public class CreateSubFolder extends AsyncServlet {
 
     /**
      * {@link Connection} to render the template
@@ -36,14 +32,11 @@ public class CreateSubFolder extends HttpServlet {
     private TemplateEngine templateEngine;
 
     /**
-     * Initializes the {@link Connection} to the database and the {@link TemplateEngine}
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initializes the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -60,7 +53,7 @@ public class CreateSubFolder extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        try {
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
             String id = request.getParameter("folderId");
 
             if (id == null || id.isEmpty()) {
@@ -74,11 +67,11 @@ public class CreateSubFolder extends HttpServlet {
             }
 
             int folderId = Integer.parseInt(id);
-            FolderDAO folderDAO = new FolderDAO(this.connection);
-            User user = (User) request.getSession().getAttribute("user");
+            FolderDAO folderDAO = new FolderDAO(connection);
+            User user = UserSessions.getInstance(getServletContext()).getUser(request);
 
-            if (folderDAO.checkOwner(folderId, user.id())) {
-                Folder folder = folderDAO.getFolder(folderId);
+            Folder folder = folderDAO.getOwnedFolder(folderId, user.id());
+            if (folder != null) {
                 ServletContext servletContext = getServletContext();
                 final WebContext ctx = new WebContext(request, response, servletContext, request.getLocale());
                 ctx.setVariable("userRequest", 1);
@@ -88,6 +81,7 @@ public class CreateSubFolder extends HttpServlet {
         } catch (NullPointerException | NumberFormatException e) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid Parameters");
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
@@ -117,29 +111,21 @@ public class CreateSubFolder extends HttpServlet {
         if (!InputValidator.isInt(folderId, response))
             return;
 
-        FolderDAO folderDAO = new FolderDAO(this.connection);
-        User user = (User) request.getSession().getAttribute("user");
-        try {
-            SubFolderDAO subFolderDAO = new SubFolderDAO(this.connection);
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            FolderDAO folderDAO = new FolderDAO(connection);
+            SubFolderDAO subFolderDAO = new SubFolderDAO(connection);
             if (folderDAO.checkOwner(Integer.parseInt(folderId), user.id())) {
                 if (subFolderDAO.createSubFolder(subFolder, new Date(new java.util.Date().getTime()), Integer.parseInt(folderId))) {
+                    FolderTreeCache.getInstance(getServletContext()).invalidate(user.id());
+                    ContentVersions.getInstance(getServletContext()).bumpTree(user.id());
                     response.sendRedirect(getServletContext().getContextPath() + "/home");
                 } else
                     response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
             } else response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
-
-    /**
-     * Closes the {@link Connection} to the database
-     */
-    @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
-    }
 }
@@ -0,0 +1,63 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.DocumentDAO;
+import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.InputValidator;
+import it.polimi.tiw.utils.JsonHandler;
+import it.polimi.tiw.utils.UserSessions;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@WebServlet(name = "DocumentApi", value = "/api/document", asyncSupported = true)
+public class DocumentApi extends AsyncServlet {
+
+    /**
+     * Sends the details of a {@link Document} of the user as JSON.
+     *
+     * @param request  an {@link HttpServletRequest} object that
+     *                 contains the request the client has made
+     *                 of the servlet
+     * @param response an {@link HttpServletResponse} object that
+     *                 contains the response the servlet sends
+     *                 to the client
+     * @throws IOException if an input or output error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String documentId = request.getParameter("documentId");
+        if (documentId == null || documentId.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
+            return;
+        }
+        if (!InputValidator.isInt(documentId, response))
+            return;
+
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        ContentVersions versions = ContentVersions.getInstance(getServletContext());
+        ContentVersions.Version documents = versions.documents(user.id());
+        String etag = versions.etag("document", user.id(), documentId, documents);
+        if (ContentVersions.notModified(request, response, etag, documents.lastModified()))
+            return;
+        Document document;
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            document = new DocumentDAO(connection).getOwnedDocument(user.id(), Integer.parseInt(documentId));
+        } catch (SQLException e) {
+            logDatabaseError(request, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
+            return;
+        }
+        if (document == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Document not found");
+            return;
+        }
+        JsonHandler.send(request, response, etag, json -> JsonHandler.writeDocument(json, document));
+    }
+}
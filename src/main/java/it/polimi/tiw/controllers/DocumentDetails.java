@@ -5,15 +5,15 @@ import it.polimi.tiw.beans.User;
 import it.polimi.tiw.dao.DocumentDAO;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
 import it.polimi.tiw.utils.InputValidator;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -21,29 +21,22 @@ import java.io.Serial;
 import java.sql.Connection;
 import java.sql.SQLException;
 
-@WebServlet(name = "Document Details", value = "/document")
-public class DocumentDetails extends HttpServlet {
+@WebServlet(name = "Document Details", value = "/document", asyncSupported = true)
+public class DocumentDetails extends AsyncServlet {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    /**
-     * {@link Connection} to the database.
-     */
-    private Connection connection;
     /**
      * {@link TemplateEngine} to render the template.
      */
     private TemplateEngine templateEngine;
 
     /**
-     * Initializes the {@link Connection} to the database and the {@link TemplateEngine}.
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initializes the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -60,23 +53,26 @@ public class DocumentDetails extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        try {
-            String documentId = request.getParameter("documentId");
-
-            if (documentId == null || documentId.isEmpty()) {
-                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
-                return;
-            }
-            if (!InputValidator.isInt(documentId, response))
-                return;
+        String documentId = request.getParameter("documentId");
 
-            int id = Integer.parseInt(documentId);
-            DocumentDAO documentDAO = new DocumentDAO(this.connection);
-            User user = (User) request.getSession().getAttribute("user");
-            if (documentDAO.checkOwner(user.id(), id)) {
+        if (documentId == null || documentId.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
+            return;
+        }
+        if (!InputValidator.isInt(documentId, response))
+            return;
 
-                Document document = documentDAO.getDocument(id);
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        ContentVersions versions = ContentVersions.getInstance(getServletContext());
+        ContentVersions.Version documents = versions.documents(user.id());
+        if (ContentVersions.notModified(request, response, versions.etag("document", user.id(), documentId, documents), documents.lastModified()))
+            return;
 
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            int id = Integer.parseInt(documentId);
+            DocumentDAO documentDAO = new DocumentDAO(connection);
+            Document document = documentDAO.getOwnedDocument(user.id(), id);
+            if (document != null) {
                 ServletContext servletContext = getServletContext();
                 final WebContext ctx = new WebContext(request, response, servletContext, request.getLocale());
                 ctx.setVariable("document", document);
@@ -86,18 +82,8 @@ public class DocumentDetails extends HttpServlet {
         } catch (NumberFormatException | NullPointerException e) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid document id");
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
-
-    /**
-     * Closes the {@link Connection} to the database.
-     */
-    @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
-    }
 }
@@ -1,35 +1,37 @@
 package it.polimi.tiw.controllers;
 
 import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.DocumentPosition;
+import it.polimi.tiw.beans.Folder;
 import it.polimi.tiw.beans.SubFolder;
 import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.Cursor;
+import it.polimi.tiw.dao.FolderDAO;
 import it.polimi.tiw.dao.SubFolderDAO;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.enums.DocumentSort;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
 import it.polimi.tiw.utils.InputValidator;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
-@WebServlet(name = "Documents", value = "/documents")
-public class Documents extends HttpServlet {
-
-    /**
-     * {@link Connection} to the database
-     */
-    private Connection connection;
+@WebServlet(name = "Documents", value = "/documents", asyncSupported = true)
+public class Documents extends AsyncServlet {
 
     /**
      * {@link Connection} to render the template
@@ -37,14 +39,11 @@ public class Documents extends HttpServlet {
     private TemplateEngine templateEngine;
 
     /**
-     * Initializes the {@link Connection} to the database and the {@link TemplateEngine}
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initializes the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -61,46 +60,80 @@ public class Documents extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        try {
-            String subId = request.getParameter("subFolder");
+        String subId = request.getParameter("subFolder");
+
+        if (subId == null || subId.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
+            return;
+        }
+
+        if (!InputValidator.isInt(subId, response))
+            return;
 
-            if (subId == null || subId.isEmpty()) {
-                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
+        ServletContext servletContext = getServletContext();
+        int limit = ContextParameters.DOCUMENTS_PAGE_SIZE.getInt(servletContext, 50);
+        String limitParameter = request.getParameter("limit");
+        if (limitParameter != null && !limitParameter.isEmpty()) {
+            if (!InputValidator.isInt(limitParameter, response))
+                return;
+            limit = Integer.parseInt(limitParameter);
+            if (limit < 1 || limit > ContextParameters.DOCUMENTS_MAX_PAGE_SIZE.getInt(servletContext, 500)) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page size");
                 return;
             }
+        }
 
-            if (!InputValidator.isInt(subId, response))
+        String sortParameter = request.getParameter("sort");
+        DocumentSort sort = sortParameter == null || sortParameter.isEmpty() ? DocumentSort.OLDEST : DocumentSort.fromValue(sortParameter);
+        if (sort == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid sort");
+            return;
+        }
+
+        String after = request.getParameter("after");
+        DocumentPosition afterPosition = null;
+        if (after != null && !after.isEmpty()) {
+            afterPosition = sort.parsePosition(after);
+            if (afterPosition == null) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page");
                 return;
+            }
+        }
 
-            int subFolderId = Integer.parseInt(subId);
-            SubFolderDAO subFolderDAO = new SubFolderDAO(this.connection);
-            User user = (User) request.getSession().getAttribute("user");
-            SubFolder subFolder = subFolderDAO.getSubFolder(subFolderId);
-            if (subFolderDAO.checkOwner(user.id(), subFolderId) && subFolder != null) {
-                List<Document> documents = subFolderDAO.getDocuments(subFolderId);
+        int subFolderId = Integer.parseInt(subId);
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        ContentVersions versions = ContentVersions.getInstance(servletContext);
+        ContentVersions.Version tree = versions.tree(user.id());
+        ContentVersions.Version contents = versions.subFolder(subFolderId);
+        String etag = versions.etag("documents", user.id(), subId, contents, tree, sort.getValue(), after, limit);
+        if (ContentVersions.notModified(request, response, etag, contents.lastModified(tree)))
+            return;
 
-                ServletContext servletContext = getServletContext();
-                final WebContext ctx = new WebContext(request, response, servletContext, request.getLocale());
-                ctx.setVariable("subFolder", subFolder);
-                ctx.setVariable("documents", documents);
-                templateEngine.process(TemplatePages.DOCUMENTS.getValue(), ctx, response.getWriter());
+        try (Connection connection = ConnectionHandler.getConnection(servletContext)) {
+            SubFolderDAO subFolderDAO = new SubFolderDAO(connection);
+            SubFolder subFolder = subFolderDAO.getOwnedSubFolder(user.id(), subFolderId);
+            if (subFolder != null) {
+                Map<Folder, List<SubFolder>> folders = FolderTreeCache.getInstance(servletContext)
+                        .get(user.id(), () -> new FolderDAO(connection).getFoldersWithSubFolders(user.id()));
+                try (Cursor<Document> documents = subFolderDAO.streamDocuments(subFolderId, sort, afterPosition, limit)) {
+                    final WebContext ctx = new WebContext(request, response, servletContext, request.getLocale());
+                    ctx.setVariable("subFolder", subFolder);
+                    ctx.setVariable("folders", folders);
+                    ctx.setVariable("documents", documents);
+                    ctx.setVariable("firstPage", afterPosition == null);
+                    ctx.setVariable("limit", limit);
+                    ctx.setVariable("sort", sort.getValue());
+                    ctx.setVariable("documentSort", sort);
+                    ctx.setVariable("sorts", DocumentSort.values());
+                    TemplateHandler.processStreaming(templateEngine, TemplatePages.DOCUMENTS.getValue(), ctx, response, servletContext);
+                }
             } else response.sendRedirect(getServletContext().getContextPath() + "/home");
 
         } catch (NullPointerException | NumberFormatException e) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid Parameters");
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
-
-    /**
-     * Closes the {@link Connection} to the database
-     */
-    @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
-    }
 }
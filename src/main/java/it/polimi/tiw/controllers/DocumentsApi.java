@@ -0,0 +1,114 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.DocumentPage;
+import it.polimi.tiw.beans.DocumentPosition;
+import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.SubFolderDAO;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.enums.DocumentSort;
+import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.InputValidator;
+import it.polimi.tiw.utils.JsonHandler;
+import it.polimi.tiw.utils.UserSessions;
+
+import javax.servlet.ServletContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@WebServlet(name = "DocumentsApi", value = "/api/documents", asyncSupported = true)
+public class DocumentsApi extends AsyncServlet {
+
+    /**
+     * Sends a page of the {@link Document}s of a {@link SubFolder} of the user as JSON. The parameters are the same
+     * of the documents page: {@code subFolder}, {@code after}, {@code limit} and {@code sort}.
+     *
+     * @param request  an {@link HttpServletRequest} object that
+     *                 contains the request the client has made
+     *                 of the servlet
+     * @param response an {@link HttpServletResponse} object that
+     *                 contains the response the servlet sends
+     *                 to the client
+     * @throws IOException if an input or output error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String subId = request.getParameter("subFolder");
+        if (subId == null || subId.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
+            return;
+        }
+        if (!InputValidator.isInt(subId, response))
+            return;
+
+        ServletContext servletContext = getServletContext();
+        int limit = ContextParameters.DOCUMENTS_PAGE_SIZE.getInt(servletContext, 50);
+        String limitParameter = request.getParameter("limit");
+        if (limitParameter != null && !limitParameter.isEmpty()) {
+            if (!InputValidator.isInt(limitParameter, response))
+                return;
+            limit = Integer.parseInt(limitParameter);
+            if (limit < 1 || limit > ContextParameters.DOCUMENTS_MAX_PAGE_SIZE.getInt(servletContext, 500)) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page size");
+                return;
+            }
+        }
+
+        String sortParameter = request.getParameter("sort");
+        DocumentSort sort = sortParameter == null || sortParameter.isEmpty() ? DocumentSort.OLDEST : DocumentSort.fromValue(sortParameter);
+        if (sort == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid sort");
+            return;
+        }
+
+        String after = request.getParameter("after");
+        DocumentPosition afterPosition = null;
+        if (after != null && !after.isEmpty()) {
+            afterPosition = sort.parsePosition(after);
+            if (afterPosition == null) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page");
+                return;
+            }
+        }
+
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        ContentVersions versions = ContentVersions.getInstance(servletContext);
+        ContentVersions.Version documents = versions.subFolder(Integer.parseInt(subId));
+        String etag = versions.etag("documents", user.id(), subId, documents, sort.getValue(), after, limit);
+        if (ContentVersions.notModified(request, response, etag, documents.lastModified()))
+            return;
+        SubFolder subFolder;
+        DocumentPage page;
+        try (Connection connection = ConnectionHandler.getConnection(servletContext)) {
+            SubFolderDAO subFolderDAO = new SubFolderDAO(connection);
+            subFolder = subFolderDAO.getOwnedSubFolder(user.id(), Integer.parseInt(subId));
+            if (subFolder == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "SubFolder not found");
+                return;
+            }
+            page = subFolderDAO.getDocuments(subFolder.id(), sort, afterPosition, limit);
+        } catch (SQLException e) {
+            logDatabaseError(request, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
+            return;
+        }
+
+        JsonHandler.send(request, response, etag, json -> {
+            json.beginObject().name("subFolder");
+            JsonHandler.writeSubFolder(json, subFolder);
+            json.name("documents").beginArray();
+            for (Document document : page.documents())
+                JsonHandler.writeDocument(json, document);
+            json.endArray().name("hasNext").value(page.hasNext());
+            if (page.hasNext())
+                json.name("next").value(sort.positionOf(page.last()).getValue());
+            json.endObject();
+        });
+    }
+}
@@ -0,0 +1,287 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.Folder;
+import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.beans.TreeEntry;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.Cursor;
+import it.polimi.tiw.dao.FolderDAO;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.CsvWriter;
+import it.polimi.tiw.utils.JsonWriter;
+import it.polimi.tiw.utils.UserSessions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serial;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+@WebServlet(name = "Export", value = "/export", asyncSupported = true)
+public class Export extends AsyncServlet {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = LoggerFactory.getLogger(Export.class);
+
+    /**
+     * Size of the buffer between the rows and the response.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Permits limiting the exports streaming at the same time, so that slow downloads cannot hold the whole pool.
+     */
+    private Semaphore permits;
+
+    /**
+     * The maximum time in nanoseconds an export streams, 0 for no limit.
+     */
+    private long timeout;
+
+    /**
+     * The time in seconds a client refused because of too many exports is asked to wait.
+     */
+    private int retryAfter;
+
+    /**
+     * Writes the records of the export in a format.
+     */
+    private interface RecordWriter {
+        void folder(Folder folder) throws IOException;
+
+        void subFolder(SubFolder subFolder) throws IOException;
+
+        void document(Document document) throws IOException;
+
+        /**
+         * Writes a last record telling that the export is incomplete.
+         */
+        void error(String message) throws IOException;
+    }
+
+    /**
+     * Reads the limits of the exports.
+     */
+    @Override
+    public void init() {
+        ServletContext context = getServletContext();
+        permits = new Semaphore(Math.max(1, ContextParameters.EXPORT_MAX_CONCURRENT.getInt(context, 3)));
+        timeout = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ContextParameters.EXPORT_TIMEOUT.getLong(context, 300_000)));
+        retryAfter = ContextParameters.REQUEST_RETRY_AFTER.getInt(context, 1);
+    }
+
+    /**
+     * This method streams all the folders, subFolders and documents of the user, one record per line, as JSON lines
+     * ({@code format=jsonl}, the default) or CSV ({@code format=csv}), compressed with gzip if {@code gzip=true}.
+     * The records are written while the rows are read from the database, so the memory used does not depend on the
+     * size of the account, and the {@link Connection} is returned to the pool as soon as the last row is read.
+     * <p>
+     * The connection stays busy for as long as the client takes to download, so only a few exports run at the same
+     * time, the others are answered with 503, and an export streaming for longer than the timeout is stopped with
+     * a last {@code error} record. A client that stops reading altogether is cut off by the write timeout of the
+     * container.
+     *
+     * @param request  an {@link HttpServletRequest} object that
+     *                 contains the request the client has made
+     *                 of the servlet
+     * @param response an {@link HttpServletResponse} object that
+     *                 contains the response the servlet sends
+     *                 to the client
+     * @throws IOException if an input or output error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String format = request.getParameter("format");
+        boolean csv;
+        if (format == null || format.isEmpty() || format.equals("jsonl"))
+            csv = false;
+        else if (format.equals("csv"))
+            csv = true;
+        else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid format");
+            return;
+        }
+        boolean gzip = Boolean.parseBoolean(request.getParameter("gzip"));
+
+        if (!permits.tryAcquire()) {
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many exports, try again later");
+            return;
+        }
+        try {
+            export(request, response, csv, gzip);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Streams the export of the user.
+     *
+     * @param request  the {@link HttpServletRequest} of the client.
+     * @param response the {@link HttpServletResponse} to the client.
+     * @param csv      true for CSV, false for JSON lines.
+     * @param gzip     true to compress the export.
+     * @throws IOException if an input or output error occurs
+     */
+    private void export(HttpServletRequest request, HttpServletResponse response, boolean csv, boolean gzip) throws IOException {
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        long start = System.nanoTime();
+        Writer writer = null;
+        try {
+            RecordWriter records = null;
+            try (Connection connection = ConnectionHandler.getConnection(getServletContext());
+                 Cursor<TreeEntry> entries = new FolderDAO(connection).streamTree(user.id())) {
+                String fileName = "export." + (csv ? "csv" : "jsonl") + (gzip ? ".gz" : "");
+                response.setContentType(gzip ? "application/gzip" : csv ? "text/csv" : "application/x-ndjson");
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+                response.setHeader("Cache-Control", "no-store");
+
+                OutputStream output = response.getOutputStream();
+                if (gzip)
+                    output = new GZIPOutputStream(output, BUFFER_SIZE);
+                writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+                records = csv ? csvRecords(writer) : jsonRecords(writer);
+
+                int folderId = 0;
+                int subFolderId = 0;
+                for (TreeEntry entry : entries) {
+                    if (timeout > 0 && System.nanoTime() - start > timeout) {
+                        logger.warn("Export of user {} stopped after {} ms", user.id(), TimeUnit.NANOSECONDS.toMillis(timeout));
+                        records.error("The export took too long and is incomplete");
+                        break;
+                    }
+                    if (entry.folder().id() != folderId) {
+                        folderId = entry.folder().id();
+                        records.folder(entry.folder());
+                    }
+                    if (entry.subFolder() != null && entry.subFolder().id() != subFolderId) {
+                        subFolderId = entry.subFolder().id();
+                        records.subFolder(entry.subFolder());
+                    }
+                    if (entry.document() != null)
+                        records.document(entry.document());
+                }
+            } catch (SQLException | IllegalStateException e) {
+                logDatabaseError(request, e);
+                if (!response.isCommitted())
+                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
+                else if (records != null)
+                    records.error("The export failed and is incomplete");
+                return;
+            }
+            // The last buffered records are written after the connection has gone back to the pool.
+            writer.close();
+        } finally {
+            // On failure, as when the client aborts the download, the deflater of the gzip stream is still released.
+            if (writer != null)
+                closeQuietly(writer);
+        }
+    }
+
+    /**
+     * Closes the writer of a failed export, ignoring the errors of a client that is gone.
+     *
+     * @param writer the {@link Writer} of the response.
+     */
+    private static void closeQuietly(Writer writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.debug("Cannot close the export", e);
+        }
+    }
+
+    /**
+     * @param writer the {@link Writer} of the response.
+     * @return the {@link RecordWriter} of JSON lines, one object with a {@code type} member per record.
+     */
+    private static RecordWriter jsonRecords(Writer writer) {
+        JsonWriter json = new JsonWriter(writer);
+        return new RecordWriter() {
+            @Override
+            public void folder(Folder folder) throws IOException {
+                json.beginObject().name("type").value("folder").name("id").value(folder.id())
+                        .name("name").value(folder.name())
+                        .name("creationDate").value(String.valueOf(folder.creationDate()))
+                        .endObject().newLine();
+            }
+
+            @Override
+            public void subFolder(SubFolder subFolder) throws IOException {
+                json.beginObject().name("type").value("subfolder").name("id").value(subFolder.id())
+                        .name("folderId").value(subFolder.folderId())
+                        .name("name").value(subFolder.name())
+                        .name("creationDate").value(String.valueOf(subFolder.creationDate()))
+                        .endObject().newLine();
+            }
+
+            @Override
+            public void document(Document document) throws IOException {
+                json.beginObject().name("type").value("document").name("id").value(document.id())
+                        .name("subFolderId").value(document.subFolderId())
+                        .name("name").value(document.name())
+                        .name("format").value(document.format())
+                        .name("summary").value(document.summary())
+                        .name("creationDate").value(String.valueOf(document.creationDate()))
+                        .endObject().newLine();
+            }
+
+            @Override
+            public void error(String message) throws IOException {
+                json.beginObject().name("type").value("error").name("message").value(message).endObject().newLine();
+            }
+        };
+    }
+
+    /**
+     * @param writer the {@link Writer} of the response.
+     * @return the {@link RecordWriter} of CSV records, after a header.
+     * @throws IOException if an error occurs while writing the header.
+     */
+    private static RecordWriter csvRecords(Writer writer) throws IOException {
+        CsvWriter csv = new CsvWriter(writer);
+        csv.writeRecord("type", "id", "parentId", "name", "format", "summary", "creationDate");
+        return new RecordWriter() {
+            @Override
+            public void folder(Folder folder) throws IOException {
+                csv.writeRecord("folder", String.valueOf(folder.id()), null, folder.name(), null, null,
+                        String.valueOf(folder.creationDate()));
+            }
+
+            @Override
+            public void subFolder(SubFolder subFolder) throws IOException {
+                csv.writeRecord("subfolder", String.valueOf(subFolder.id()), String.valueOf(subFolder.folderId()),
+                        subFolder.name(), null, null, String.valueOf(subFolder.creationDate()));
+            }
+
+            @Override
+            public void document(Document document) throws IOException {
+                csv.writeRecord("document", String.valueOf(document.id()), String.valueOf(document.subFolderId()),
+                        document.name(), document.format(), document.summary(), String.valueOf(document.creationDate()));
+            }
+
+            @Override
+            public void error(String message) throws IOException {
+                csv.writeRecord("error", null, null, message, null, null, null);
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.beans.Folder;
+import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.FolderDAO;
+import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
+import it.polimi.tiw.utils.JsonHandler;
+import it.polimi.tiw.utils.UserSessions;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+@WebServlet(name = "FoldersApi", value = "/api/folders", asyncSupported = true)
+public class FoldersApi extends AsyncServlet {
+
+    /**
+     * Sends the tree of {@link Folder}s and {@link SubFolder}s of the user as JSON.
+     *
+     * @param request  an {@link HttpServletRequest} object that
+     *                 contains the request the client has made
+     *                 of the servlet
+     * @param response an {@link HttpServletResponse} object that
+     *                 contains the response the servlet sends
+     *                 to the client
+     * @throws IOException if an input or output error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        ContentVersions versions = ContentVersions.getInstance(getServletContext());
+        ContentVersions.Version tree = versions.tree(user.id());
+        String etag = versions.etag("folders", user.id(), tree);
+        if (ContentVersions.notModified(request, response, etag, tree.lastModified()))
+            return;
+        Map<Folder, List<SubFolder>> folders;
+        try {
+            folders = FolderTreeCache.getInstance(getServletContext()).get(user.id(), () -> {
+                try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+                    return new FolderDAO(connection).getFoldersWithSubFolders(user.id());
+                }
+            });
+        } catch (SQLException e) {
+            logDatabaseError(request, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while retrieving folders");
+            return;
+        }
+        JsonHandler.send(request, response, etag, json -> {
+            json.beginObject().name("folders").beginArray();
+            for (Map.Entry<Folder, List<SubFolder>> entry : folders.entrySet()) {
+                JsonHandler.beginFolder(json, entry.getKey());
+                json.name("subFolders").beginArray();
+                for (SubFolder subFolder : entry.getValue())
+                    JsonHandler.writeSubFolder(json, subFolder);
+                json.endArray().endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+}
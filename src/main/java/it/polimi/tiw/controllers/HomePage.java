@@ -4,14 +4,15 @@ import it.polimi.tiw.beans.User;
 import it.polimi.tiw.dao.FolderDAO;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -22,29 +23,22 @@ import java.sql.SQLException;
 /**
  * This class is the controller for the home page.
  */
-@WebServlet(name = "HomePage", value = "/home")
-public class HomePage extends HttpServlet {
+@WebServlet(name = "HomePage", value = "/home", asyncSupported = true)
+public class HomePage extends AsyncServlet {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    /**
-     * {@link Connection} to the database.
-     */
-    private Connection connection;
     /**
      * {@link TemplateEngine} to render the template.
      */
     private TemplateEngine templateEngine;
 
     /**
-     * Initialize the {@link Connection} to the database and the {@link TemplateEngine}.
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initialize the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -62,25 +56,22 @@ public class HomePage extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         try {
-            FolderDAO folderDAO = new FolderDAO(connection);
+            User user = UserSessions.getInstance(getServletContext()).getUser(req);
+            ContentVersions versions = ContentVersions.getInstance(getServletContext());
+            ContentVersions.Version tree = versions.tree(user.id());
+            if (ContentVersions.notModified(req, resp, versions.etag("home", user.id(), tree), tree.lastModified()))
+                return;
             final WebContext ctx = new WebContext(req, resp, req.getServletContext(), req.getLocale());
-            User user = (User) req.getSession().getAttribute("user");
             ctx.setVariable("move", false);
-            ctx.setVariable("folders", folderDAO.getFoldersWithSubFolders(user.id()));
-            templateEngine.process(TemplatePages.HOME.getValue(), ctx, resp.getWriter());
+            ctx.setVariable("folders", FolderTreeCache.getInstance(getServletContext()).get(user.id(), () -> {
+                try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+                    return new FolderDAO(connection).getFoldersWithSubFolders(user.id());
+                }
+            }));
+            TemplateHandler.processStreaming(templateEngine, TemplatePages.HOME.getValue(), ctx, resp, getServletContext());
         } catch (SQLException e) {
+            logDatabaseError(req, e);
             resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while retrieving folders");
         }
     }
-
-    /**
-     * Close the {@link Connection} to the database.
-     */
-    @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
-    }
 }
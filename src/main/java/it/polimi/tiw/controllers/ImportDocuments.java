@@ -0,0 +1,237 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.DocumentBatchInserter;
+import it.polimi.tiw.dao.DocumentDAO;
+import it.polimi.tiw.dao.SubFolderDAO;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.CsvReader;
+import it.polimi.tiw.utils.InputValidator;
+import it.polimi.tiw.utils.JsonReader;
+import it.polimi.tiw.utils.UserSessions;
+
+import javax.servlet.ServletContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@WebServlet(name = "ImportDocuments", value = "/import-documents", asyncSupported = true)
+public class ImportDocuments extends AsyncServlet {
+
+    /**
+     * Maximum number of characters kept for a record of the upload, longer records are rejected.
+     */
+    private static final int MAX_RECORD_LENGTH = 4096;
+
+    /**
+     * Maximum number of rejected records listed in the response.
+     */
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * A record of the upload.
+     *
+     * @param line    the line where the record starts.
+     * @param name    the name of the document.
+     * @param format  the format of the document.
+     * @param summary the summary of the document.
+     * @param error   the reason why the record cannot be parsed, null if it can.
+     */
+    private record Row(int line, String name, String format, String summary, String error) {
+    }
+
+    /**
+     * Reads the records of the upload one at a time.
+     */
+    private interface RowReader {
+        /**
+         * @return the next record, null at the end of the upload.
+         * @throws IOException if an error occurs while reading the upload.
+         */
+        Row next() throws IOException;
+    }
+
+    /**
+     * This method imports the {@link Document}s streamed in the body of the request into the subFolder in the
+     * {@code subFolderId} parameter. The body is either CSV ({@code text/csv}) with the columns name, format and
+     * summary and an optional header, or JSON lines ({@code application/x-ndjson}) with the same members.
+     * Valid records are inserted in batches while the body is read, each batch in its own transaction on a connection
+     * borrowed only to insert it, invalid ones are reported in the response.
+     *
+     * @param request  an {@link HttpServletRequest} object that
+     *                 contains the request the client has made
+     *                 of the servlet
+     * @param response an {@link HttpServletResponse} object that
+     *                 contains the response the servlet sends
+     *                 to the client
+     * @throws IOException if an input or output error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String subFolderId = request.getParameter("subFolderId");
+        if (subFolderId == null || subFolderId.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
+            return;
+        }
+        if (!InputValidator.isInt(subFolderId, response))
+            return;
+
+        String contentType = request.getContentType() == null ? "" : request.getContentType().toLowerCase(Locale.ROOT);
+        boolean csv = contentType.startsWith("text/csv");
+        if (!csv && !contentType.startsWith("application/x-ndjson") && !contentType.startsWith("application/jsonl")) {
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Use text/csv or application/x-ndjson");
+            return;
+        }
+        if (request.getCharacterEncoding() == null)
+            request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        ServletContext servletContext = getServletContext();
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+        SubFolder subFolder;
+        try (Connection connection = ConnectionHandler.getConnection(servletContext)) {
+            subFolder = new SubFolderDAO(connection).getOwnedSubFolder(user.id(), Integer.parseInt(subFolderId));
+        } catch (SQLException e) {
+            logDatabaseError(request, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
+            return;
+        }
+        if (subFolder == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid subFolder id");
+            return;
+        }
+
+        // The body is read without a connection, which is borrowed only to insert each full batch.
+        int rejected = 0;
+        List<String> errors = new ArrayList<>();
+        DocumentBatchInserter inserter = new DocumentBatchInserter(() -> ConnectionHandler.getConnection(servletContext),
+                user.id(), subFolder.id(), ContextParameters.IMPORT_BATCH_SIZE.getInt(servletContext, 1000));
+        try {
+            RowReader rows = csv ? csvRows(request.getReader()) : jsonRows(request.getReader());
+            Row row;
+            while ((row = rows.next()) != null) {
+                String error = row.error() != null ? row.error() : validate(row);
+                if (error == null) {
+                    inserter.add(row.name().trim(), row.format().trim(), row.summary().trim());
+                } else {
+                    rejected++;
+                    if (errors.size() < MAX_REPORTED_ERRORS)
+                        errors.add("line " + row.line() + ": " + error);
+                }
+            }
+            inserter.finish();
+        } catch (SQLException e) {
+            logDatabaseError(request, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    "Error while processing the request, " + inserter.getImported() + " documents imported");
+            return;
+        } finally {
+            if (inserter.getImported() > 0)
+                ContentVersions.getInstance(servletContext).bumpSubFolder(subFolder.id());
+        }
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        PrintWriter writer = response.getWriter();
+        writer.println("imported: " + inserter.getImported());
+        writer.println("rejected: " + rejected);
+        for (String error : errors)
+            writer.println(error);
+    }
+
+    /**
+     * @param row a parsed record.
+     * @return the reason why the record is not a valid document, null if it is valid.
+     */
+    private static String validate(Row row) {
+        if (row.name() == null || !DocumentDAO.checkName(row.name().trim()))
+            return "invalid name";
+        if (row.format() == null || !DocumentDAO.checkFormat(row.format().trim()))
+            return "invalid format";
+        if (row.summary() == null || !DocumentDAO.checkSummary(row.summary().trim()))
+            return "invalid summary";
+        return null;
+    }
+
+    /**
+     * @param reader the body of the request.
+     * @return the {@link RowReader} of a CSV body, skipping empty lines and the header.
+     */
+    private static RowReader csvRows(BufferedReader reader) {
+        CsvReader csvReader = new CsvReader(reader, MAX_RECORD_LENGTH);
+        return new RowReader() {
+            private boolean first = true;
+
+            @Override
+            public Row next() throws IOException {
+                List<String> fields;
+                while ((fields = csvReader.next()) != null) {
+                    boolean header = first && fields.size() == 3 && fields.get(0).trim().equalsIgnoreCase("name")
+                            && fields.get(1).trim().equalsIgnoreCase("format") && fields.get(2).trim().equalsIgnoreCase("summary");
+                    first = false;
+                    if (header || (fields.size() == 1 && fields.get(0).isBlank()))
+                        continue;
+                    int line = csvReader.getLine();
+                    if (csvReader.isTruncated())
+                        return new Row(line, null, null, null, "record too long");
+                    if (fields.size() != 3)
+                        return new Row(line, null, null, null, "expected 3 fields, found " + fields.size());
+                    return new Row(line, fields.get(0), fields.get(1), fields.get(2), null);
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @param reader the body of the request.
+     * @return the {@link RowReader} of a JSON-lines body, skipping empty lines.
+     */
+    private static RowReader jsonRows(BufferedReader reader) {
+        return new RowReader() {
+            private int line;
+
+            @Override
+            public Row next() throws IOException {
+                StringBuilder text = new StringBuilder();
+                while (true) {
+                    text.setLength(0);
+                    boolean truncated = false;
+                    int c;
+                    while ((c = reader.read()) != -1 && c != '\n') {
+                        if (text.length() < MAX_RECORD_LENGTH)
+                            text.append((char) c);
+                        else
+                            truncated = true;
+                    }
+                    if (c == -1 && text.length() == 0)
+                        return null;
+                    line++;
+                    if (truncated)
+                        return new Row(line, null, null, null, "record too long");
+                    if (text.toString().isBlank())
+                        continue;
+                    try {
+                        Map<String, String> members = JsonReader.readStringObject(text.toString());
+                        return new Row(line, members.get("name"), members.get("format"), members.get("summary"), null);
+                    } catch (IllegalArgumentException e) {
+                        return new Row(line, null, null, null, "invalid JSON: " + e.getMessage());
+                    }
+                }
+            }
+        };
+    }
+}
@@ -2,49 +2,48 @@ package it.polimi.tiw.controllers;
 
 import it.polimi.tiw.utils.ConnectionHandler;
 import it.polimi.tiw.beans.User;
+import it.polimi.tiw.beans.UserCredentials;
 import it.polimi.tiw.dao.UserDAO;
 import it.polimi.tiw.enums.TemplatePages;
+import it.polimi.tiw.utils.PasswordHasher;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.Serial;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This class is the controller for the login page.
  */
-@WebServlet(name = "Login", value = "/login")
-public class Login extends HttpServlet {
+@WebServlet(name = "Login", value = "/login", asyncSupported = true)
+public class Login extends AsyncServlet {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    /**
-     * {@link Connection} to the database.
-     */
-    private Connection connection;
+    private static final Logger logger = LoggerFactory.getLogger(Login.class);
+
     /**
      * {@link TemplateEngine} to render the template.
      */
     private TemplateEngine templateEngine;
 
     /**
-     * Initialize the {@link Connection} to the database and the {@link TemplateEngine}.
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initialize the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -89,18 +88,41 @@ public class Login extends HttpServlet {
             resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Username or password cannot be empty");
             return;
         }
+        if (identifier.length() > 50 || password.length() > 50) {
+            resp.sendRedirect(getServletContext().getContextPath() + "/login?error=true");
+            return;
+        }
+
+        UserCredentials credentials = null;
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            credentials = new UserDAO(connection).getCredentials(identifier);
+        } catch (SQLException e) {
+            logger.error("Cannot read the credentials", e);
+            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while checking credentials");
+            return;
+        }
 
-        UserDAO userDAO = new UserDAO(connection);
+        // The password is verified after returning the connection, hashing is too slow to hold it.
+        // An unknown identifier costs a hash too, so that the time of the answer does not tell if the account exists.
         User user = null;
+        PasswordHasher passwordHasher = PasswordHasher.getInstance(getServletContext());
         try {
-            if (UserDAO.isValidEmail(identifier) && userDAO.doesEmailExist(identifier)) {
-                user = userDAO.checkEmailCredentials(identifier, password);
-            } else if (UserDAO.isValidUsername(identifier) && userDAO.doesUsernameExist(identifier)) {
-                user = userDAO.checkUsernameCredentials(identifier, password);
+            if (credentials == null)
+                passwordHasher.verifyUnknown(password);
+            else if (passwordHasher.verify(password, credentials.passwordHash())) {
+                user = credentials.user();
+                if (passwordHasher.needsRehash(credentials.passwordHash())) {
+                    String passwordHash = passwordHasher.hash(password);
+                    try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+                        new UserDAO(connection).updatePassword(user.id(), passwordHash);
+                    } catch (SQLException e) {
+                        logger.warn("Cannot rehash the password of user {}", user.id(), e);
+                    }
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while checking credentials");
+        } catch (RejectedExecutionException e) {
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many login attempts, try again later");
             return;
         }
 
@@ -108,20 +130,23 @@ public class Login extends HttpServlet {
         if (user == null)
             path = getServletContext().getContextPath() + "/login?error=true";
         else {
-            req.getSession().setAttribute("user", user);
+            try {
+                UserSessions.getInstance(getServletContext()).login(req, resp, user);
+            } catch (SQLException e) {
+                logger.error("Cannot save the session of user {}", user.id(), e);
+                resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while logging in");
+                return;
+            }
             path = getServletContext().getContextPath() + "/home";
         }
         resp.sendRedirect(path);
     }
 
     /**
-     * Close the {@link Connection} to the database.
+     * The form is rendered on the container thread, only its submission waits for the database.
      */
     @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
+    protected boolean runsAsync(HttpServletRequest request) {
+        return !request.getMethod().equals("GET");
     }
 }
@@ -1,5 +1,7 @@
 package it.polimi.tiw.controllers;
 
+import it.polimi.tiw.utils.UserSessions;
+
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -16,7 +18,7 @@ public class Logout extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Invalidate the session and redirect to the login page.
+     * Forget the logged user and redirect to the login page.
      *
      * @param req  an {@link HttpServletRequest} object that
      *             contains the request the client has made
@@ -28,7 +30,7 @@ public class Logout extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-        req.getSession().invalidate();
+        UserSessions.getInstance(getServletContext()).logout(req, resp);
         resp.sendRedirect(getServletContext().getContextPath() + "/login");
     }
 
@@ -0,0 +1,71 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.utils.MetricsRegistry;
+
+import javax.servlet.ServletContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * This class is the controller of the metrics of the application, in the Prometheus text format.
+ * The metrics are read only by the configured addresses, as the ones of the scrapers.
+ */
+@WebServlet(name = "Metrics", value = "/metrics", asyncSupported = true)
+public class Metrics extends HttpServlet {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The addresses allowed to read the metrics, empty to allow any.
+     */
+    private Set<String> allowedAddresses;
+
+    /**
+     * Reads the addresses allowed to read the metrics.
+     */
+    @Override
+    public void init() {
+        ServletContext context = getServletContext();
+        allowedAddresses = Arrays.stream(ContextParameters.METRICS_ALLOWED_ADDRESSES.getString(context, "").split(","))
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Writes the metrics.
+     *
+     * @param request  an {@link HttpServletRequest} object that
+     *                 contains the request the client has made
+     *                 of the servlet
+     * @param response an {@link HttpServletResponse} object that
+     *                 contains the response the servlet sends
+     *                 to the client
+     * @throws IOException if an input or output error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!allowedAddresses.isEmpty() && !allowedAddresses.contains(request.getRemoteAddr())) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        MetricsRegistry registry = MetricsRegistry.getInstance(getServletContext());
+        if (registry == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Cache-Control", "no-store");
+        registry.write(response.getWriter());
+    }
+}
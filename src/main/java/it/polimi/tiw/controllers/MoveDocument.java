@@ -9,15 +9,16 @@ import it.polimi.tiw.dao.FolderDAO;
 import it.polimi.tiw.dao.SubFolderDAO;
 import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
 import it.polimi.tiw.utils.InputValidator;
 import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -26,13 +27,8 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 
-@WebServlet(name = "MoveDocument", value = "/move-document")
-public class MoveDocument extends HttpServlet {
-
-    /**
-     * {@link Connection} to the database
-     */
-    private Connection connection;
+@WebServlet(name = "MoveDocument", value = "/move-document", asyncSupported = true)
+public class MoveDocument extends AsyncServlet {
 
     /**
      * {@link Connection} to render the template
@@ -40,14 +36,11 @@ public class MoveDocument extends HttpServlet {
     private TemplateEngine templateEngine;
 
     /**
-     * Initializes the {@link Connection} to the database and the {@link TemplateEngine}
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initializes the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -74,18 +67,17 @@ public class MoveDocument extends HttpServlet {
         if (!InputValidator.isInt(docId, response))
             return;
 
-        DocumentDAO documentDAO = new DocumentDAO(this.connection);
-        SubFolderDAO subFolderDAO = new SubFolderDAO(this.connection);
-        User user = (User) request.getSession().getAttribute("user");
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
 
-        try {
-            Document document = documentDAO.getDocument(Integer.parseInt(docId));
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            DocumentDAO documentDAO = new DocumentDAO(connection);
+            SubFolderDAO subFolderDAO = new SubFolderDAO(connection);
+            Document document = documentDAO.getOwnedDocument(user.id(), Integer.parseInt(docId));
             if (document != null) {
-                int fromSubFolder = document.subFolderId();
-                if (subFolderDAO.checkOwner(user.id(), fromSubFolder)) {
-                    SubFolder subFolder = subFolderDAO.getSubFolder(fromSubFolder);
-                    FolderDAO folderDAO = new FolderDAO(this.connection);
-                    Map<Folder, List<SubFolder>> folders = folderDAO.getFoldersWithSubFolders(user.id());
+                SubFolder subFolder = subFolderDAO.getOwnedSubFolder(user.id(), document.subFolderId());
+                if (subFolder != null) {
+                    Map<Folder, List<SubFolder>> folders = FolderTreeCache.getInstance(getServletContext())
+                            .get(user.id(), () -> new FolderDAO(connection).getFoldersWithSubFolders(user.id()));
 
                     ServletContext servletContext = getServletContext();
                     final WebContext ctx = new WebContext(request, response, servletContext, request.getLocale());
@@ -99,6 +91,7 @@ public class MoveDocument extends HttpServlet {
             }
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid subFolder id");
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
@@ -128,36 +121,24 @@ public class MoveDocument extends HttpServlet {
         if (!InputValidator.isInt(selectedSubFolder, response) || !InputValidator.isInt(documentId, response))
             return;
 
-        DocumentDAO documentDAO = new DocumentDAO(this.connection);
-        SubFolderDAO subFolderDAO = new SubFolderDAO(this.connection);
-        User user = (User) request.getSession().getAttribute("user");
-
-        try {
-            if (documentDAO.checkOwner(user.id(), Integer.parseInt(documentId)) && subFolderDAO.checkOwner(user.id(), Integer.parseInt(selectedSubFolder))) {
-                Document document = documentDAO.getDocument(Integer.parseInt(documentId));
-                if (document != null) {
-                    if (documentDAO.moveDocument(document.id(), Integer.parseInt(selectedSubFolder))) {
-                        response.sendRedirect(getServletContext().getContextPath() + "/documents?subFolder=" + selectedSubFolder);
-                        return;
-                    }
-
-                }
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            DocumentDAO documentDAO = new DocumentDAO(connection);
+            Document document = documentDAO.getOwnedDocument(user.id(), Integer.parseInt(documentId));
+            if (document != null && documentDAO.moveOwnedDocument(user.id(), document.id(), Integer.parseInt(selectedSubFolder))) {
+                ContentVersions versions = ContentVersions.getInstance(getServletContext());
+                versions.bumpSubFolder(document.subFolderId());
+                versions.bumpSubFolder(Integer.parseInt(selectedSubFolder));
+                versions.bumpDocuments(user.id());
+                response.sendRedirect(getServletContext().getContextPath() + "/documents?subFolder=" + selectedSubFolder);
+                return;
             }
             response.sendError(HttpServletResponse.SC_BAD_REQUEST);
         } catch (SQLException e) {
+            logDatabaseError(request, e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
         }
     }
 
-    /**
-     * Closes the {@link Connection} to the database
-     */
-    @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
-    }
-
 }
@@ -0,0 +1,137 @@
+package it.polimi.tiw.controllers;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.DocumentMoveResult;
+import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.DocumentDAO;
+import it.polimi.tiw.dao.SubFolderDAO;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.enums.MoveOutcome;
+import it.polimi.tiw.enums.TemplatePages;
+import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.InputValidator;
+import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.WebContext;
+
+import javax.servlet.ServletContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@WebServlet(name = "MoveDocuments", value = "/move-documents", asyncSupported = true)
+public class MoveDocuments extends AsyncServlet {
+
+    /**
+     * {@link TemplateEngine} to render the template
+     */
+    private TemplateEngine templateEngine;
+
+    /**
+     * Initializes the {@link TemplateEngine}.
+     */
+    @Override
+    public void init() {
+        ServletContext context = getServletContext();
+        templateEngine = TemplateHandler.getTemplateEngine(context);
+    }
+
+    /**
+     * This method processes the request of moving many {@link Document}s to a {@link SubFolder}: either the ones
+     * selected with the {@code documentId} parameters or all the ones of the subFolder in {@code fromSubFolder}.
+     * The outcome of each document is shown in the results page.
+     *
+     * @param request  an {@link HttpServletRequest} object that
+     *                 contains the request the client has made
+     *                 of the servlet
+     * @param response an {@link HttpServletResponse} object that
+     *                 contains the response the servlet sends
+     *                 to the client
+     * @throws IOException if an input or output error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String selectedSubFolder = request.getParameter("selectedSubFolder");
+        String fromSubFolder = request.getParameter("fromSubFolder");
+        String[] documentIds = request.getParameterValues("documentId");
+
+        if (selectedSubFolder == null || selectedSubFolder.isEmpty()
+                || ((fromSubFolder == null || fromSubFolder.isEmpty()) && (documentIds == null || documentIds.length == 0))) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The data is not correct");
+            return;
+        }
+        if (!InputValidator.isInt(selectedSubFolder, response))
+            return;
+
+        ServletContext servletContext = getServletContext();
+        int maxDocuments = ContextParameters.BULK_MOVE_MAX_DOCUMENTS.getInt(servletContext, 10_000);
+        Integer fromSubFolderId = null;
+        List<Integer> ids = new ArrayList<>();
+        if (fromSubFolder != null && !fromSubFolder.isEmpty()) {
+            if (!InputValidator.isInt(fromSubFolder, response))
+                return;
+            fromSubFolderId = Integer.parseInt(fromSubFolder);
+        } else {
+            if (documentIds.length > maxDocuments) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Too many documents");
+                return;
+            }
+            for (String documentId : documentIds) {
+                if (!InputValidator.isInt(documentId, response))
+                    return;
+                ids.add(Integer.parseInt(documentId));
+            }
+        }
+
+        User user = UserSessions.getInstance(getServletContext()).getUser(request);
+
+        SubFolder subFolder;
+        List<DocumentMoveResult> results;
+        try (Connection connection = ConnectionHandler.getConnection(servletContext)) {
+            subFolder = new SubFolderDAO(connection).getOwnedSubFolder(user.id(), Integer.parseInt(selectedSubFolder));
+            if (subFolder == null) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid subFolder id");
+                return;
+            }
+            DocumentDAO documentDAO = new DocumentDAO(connection);
+            results = fromSubFolderId == null
+                    ? documentDAO.moveOwnedDocuments(user.id(), ids, subFolder.id())
+                    : documentDAO.moveAllOwnedDocuments(user.id(), fromSubFolderId, subFolder.id(), maxDocuments);
+        } catch (SQLException e) {
+            logDatabaseError(request, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error while processing the request");
+            return;
+        }
+        if (results == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Too many documents");
+            return;
+        }
+
+        ContentVersions versions = ContentVersions.getInstance(servletContext);
+        boolean anyMoved = false;
+        for (DocumentMoveResult result : results) {
+            if (result.outcome() == MoveOutcome.MOVED) {
+                versions.bumpSubFolder(result.fromSubFolderId());
+                anyMoved = true;
+            }
+        }
+        if (anyMoved) {
+            versions.bumpSubFolder(subFolder.id());
+            versions.bumpDocuments(user.id());
+        }
+
+        final WebContext ctx = new WebContext(request, response, servletContext, request.getLocale());
+        ctx.setVariable("subFolder", subFolder);
+        ctx.setVariable("results", results);
+        ctx.setVariable("moved", results.stream().filter(result -> result.outcome() == MoveOutcome.MOVED).count());
+        templateEngine.process(TemplatePages.MOVE_RESULTS.getValue(), ctx, response.getWriter());
+    }
+}
@@ -4,47 +4,40 @@ import it.polimi.tiw.enums.RegisterError;
 import it.polimi.tiw.utils.ConnectionHandler;
 import it.polimi.tiw.dao.UserDAO;
 import it.polimi.tiw.enums.TemplatePages;
+import it.polimi.tiw.utils.PasswordHasher;
 import it.polimi.tiw.utils.TemplateHandler;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.WebContext;
 
 import javax.servlet.ServletContext;
-import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.Serial;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This class is the controller for the register page.
  */
-@WebServlet(name = "Register", value = "/register")
-public class Register extends HttpServlet {
+@WebServlet(name = "Register", value = "/register", asyncSupported = true)
+public class Register extends AsyncServlet {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    /**
-     * {@link Connection} to the database.
-     */
-    private Connection connection;
     /**
      * {@link TemplateEngine} to render the template.
      */
     private TemplateEngine templateEngine;
 
     /**
-     * Initialize the {@link Connection} to the database and the {@link TemplateEngine}.
-     *
-     * @throws ServletException if the {@link Connection} to the database cannot be initialized.
+     * Initialize the {@link TemplateEngine}.
      */
     @Override
-    public void init() throws ServletException {
+    public void init() {
         ServletContext context = getServletContext();
-        connection = ConnectionHandler.getConnection(context);
         templateEngine = TemplateHandler.getTemplateEngine(context);
     }
 
@@ -108,54 +101,64 @@ public class Register extends HttpServlet {
             return;
         }
 
-        UserDAO userDAO = new UserDAO(connection);
-        try {
+        if (!UserDAO.isValidUsername(username) || !UserDAO.isValidName(name.trim()) || !UserDAO.isValidSurname(surname.trim()) ||
+                !UserDAO.isValidPassword(password)) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid parameters");
+            return;
+        }
 
-            if (!UserDAO.isValidUsername(username) || !UserDAO.isValidName(name.trim()) || !UserDAO.isValidSurname(surname.trim()) ||
-                    !UserDAO.isValidPassword(password)) {
-                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid parameters");
-                return;
-            }
+        name = name.trim();
+        surname = surname.trim();
 
-            name = name.trim();
-            surname = surname.trim();
+        RegisterError error = null;
+        if (!UserDAO.isValidEmail(email))
+            error = RegisterError.INVALID_EMAIL;
+        else if (!password.equals(confirmPassword))
+            error = RegisterError.PASSWORD_MISMATCH;
+        if (error != null) {
+            resp.sendRedirect(req.getContextPath() + "/register?error=" + error.ordinal());
+            return;
+        }
+
+        // The password is hashed before borrowing the connection, hashing is too slow to hold it.
+        String passwordHash;
+        try {
+            passwordHash = PasswordHasher.getInstance(getServletContext()).hash(password);
+        } catch (RejectedExecutionException e) {
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many requests, try again later");
+            return;
+        }
 
-            RegisterError error;
+        try (Connection connection = ConnectionHandler.getConnection(getServletContext())) {
+            UserDAO userDAO = new UserDAO(connection);
 
-            if (!UserDAO.isValidEmail(email))
-                error = RegisterError.INVALID_EMAIL;
-            else if (userDAO.doesUsernameExist(username))
+            if (userDAO.doesUsernameExist(username))
                 error = RegisterError.USERNAME_NOT_AVAILABLE;
             else if (userDAO.doesEmailExist(email))
                 error = RegisterError.EMAIL_ALREADY_USED;
-            else if (!password.equals(confirmPassword))
-                error = RegisterError.PASSWORD_MISMATCH;
-            else
-                error = null;
 
             if (error != null) {
                 resp.sendRedirect(req.getContextPath() + "/register?error=" + error.ordinal());
                 return;
             }
 
-            if (userDAO.addUser(username, email, name, surname, password))
+            if (userDAO.addUser(username, email, name, surname, passwordHash))
                 resp.sendRedirect(req.getContextPath() + "/login?success=true");
             else
                 resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Unknown error while creating account");
 
         } catch (SQLException e) {
+            logDatabaseError(req, e);
             resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error with the database");
         }
     }
 
     /**
-     * Close the {@link Connection} to the database.
+     * The form is rendered on the container thread, only its submission waits for the database.
      */
     @Override
-    public void destroy() {
-        try {
-            ConnectionHandler.closeConnection(connection);
-        } catch (SQLException ignored) {
-        }
+    protected boolean runsAsync(HttpServletRequest request) {
+        return !request.getMethod().equals("GET");
     }
 }
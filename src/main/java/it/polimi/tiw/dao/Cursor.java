@@ -0,0 +1,136 @@
+package it.polimi.tiw.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a lazy, forward-only view of the rows of a query.
+ * <p>
+ * Rows are mapped only when they are iterated, so a template can write each row to the response as soon as
+ * it is read from the database. The cursor can be iterated once and owns its {@link PreparedStatement},
+ * which is closed by {@link #close()}. The {@link java.sql.Connection} must stay open until the cursor is closed.
+ *
+ * @param <T> the type of the beans.
+ */
+public class Cursor<T> implements Iterable<T>, AutoCloseable {
+
+    /**
+     * Fetch size that makes the MySQL driver stream the rows one by one instead of reading the whole result.
+     */
+    public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private final PreparedStatement statement;
+    private final RowMapper<T> mapper;
+    private final int limit;
+    private ResultSet resultSet;
+    private boolean peeked;
+    private boolean hasRow;
+    private int count;
+    private boolean hasMore;
+    private T last;
+    private boolean iterated;
+
+    /**
+     * Constructor. The statement must be already bound and is executed lazily.
+     *
+     * @param statement the {@link PreparedStatement} of the query.
+     * @param mapper    the {@link RowMapper} of the rows.
+     * @param limit     the maximum number of rows returned, further rows only set {@link #hasMore()}.
+     */
+    public Cursor(PreparedStatement statement, RowMapper<T> mapper, int limit) {
+        this.statement = statement;
+        this.mapper = mapper;
+        this.limit = limit;
+    }
+
+    /**
+     * @return true if the query returned no row.
+     */
+    public boolean isEmpty() {
+        return count == 0 && !peek();
+    }
+
+    /**
+     * @return true if there were other rows after the limit. Meaningful only after the iteration.
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * @return the last bean returned by the iteration, null if none.
+     */
+    public T getLast() {
+        return last;
+    }
+
+    /**
+     * @return the number of beans returned by the iteration so far.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iterated)
+            throw new IllegalStateException("A cursor can be iterated only once");
+        iterated = true;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (count >= limit) {
+                    hasMore = peek();
+                    return false;
+                }
+                return peek();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                peeked = false;
+                try {
+                    last = mapper.map(resultSet);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error while reading the rows", e);
+                }
+                count++;
+                return last;
+            }
+        };
+    }
+
+    /**
+     * Moves to the next row if the current one has already been consumed.
+     *
+     * @return true if there is a row to consume.
+     */
+    private boolean peek() {
+        if (peeked)
+            return hasRow;
+        try {
+            if (resultSet == null)
+                resultSet = statement.executeQuery();
+            hasRow = resultSet.next();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error while reading the rows", e);
+        }
+        peeked = true;
+        return hasRow;
+    }
+
+    /**
+     * Closes the {@link PreparedStatement} and its {@link ResultSet}.
+     *
+     * @throws SQLException if an error occurs while closing the statement.
+     */
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+    }
+}
@@ -0,0 +1,101 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.beans.Document;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class inserts many {@link Document}s in a subFolder in batches, each committed in its own transaction.
+ * <p>
+ * The documents are kept in memory until a batch is full and then inserted by {@link DocumentDAO#importDocuments}
+ * on a {@link Connection} borrowed only for that batch, so an import of any size keeps at most one batch in memory
+ * and a slow upload does not hold a connection while its body is read. The documents of an incomplete batch are
+ * inserted by {@link #finish()}.
+ */
+public class DocumentBatchInserter {
+
+    /**
+     * Lends the {@link Connection} of a batch, which is closed once the batch is committed.
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        /**
+         * @return a {@link Connection} to the database.
+         * @throws SQLException if no {@link Connection} is available.
+         */
+        Connection getConnection() throws SQLException;
+    }
+
+    private final ConnectionSource connections;
+    private final int userId;
+    private final int subFolderId;
+    private final int batchSize;
+    private final Date creationDate = new Date(System.currentTimeMillis());
+    private final List<Document> pending;
+    private int imported;
+
+    /**
+     * Constructor. The owner of the subFolder must be checked by the caller.
+     *
+     * @param connections the {@link ConnectionSource} of the batches.
+     * @param userId      the id of the owner of the subFolder.
+     * @param subFolderId the id of the subFolder.
+     * @param batchSize   the number of documents inserted by a batch.
+     */
+    public DocumentBatchInserter(ConnectionSource connections, int userId, int subFolderId, int batchSize) {
+        this.connections = connections;
+        this.userId = userId;
+        this.subFolderId = subFolderId;
+        this.batchSize = Math.max(1, batchSize);
+        this.pending = new ArrayList<>(Math.min(this.batchSize, 1024));
+    }
+
+    /**
+     * This method adds a document to the current batch, inserting the batch if it is full.
+     * The fields must be already validated.
+     *
+     * @param name    the name of the document.
+     * @param format  the format of the document.
+     * @param summary the summary of the document.
+     * @throws SQLException if an error occurs while inserting the batch.
+     */
+    public void add(String name, String format, String summary) throws SQLException {
+        pending.add(new Document(0, name, format, summary, creationDate, subFolderId));
+        if (pending.size() == batchSize)
+            flush();
+    }
+
+    /**
+     * This method inserts and commits the documents of the last batch.
+     *
+     * @throws SQLException if an error occurs while inserting the batch.
+     */
+    public void finish() throws SQLException {
+        if (!pending.isEmpty())
+            flush();
+    }
+
+    /**
+     * @return the number of documents inserted and committed so far.
+     */
+    public int getImported() {
+        return imported;
+    }
+
+    /**
+     * Inserts and commits the current batch on a borrowed {@link Connection}.
+     *
+     * @throws SQLException if an error occurs while inserting the batch, in which case none of its documents is inserted.
+     */
+    private void flush() throws SQLException {
+        try (Connection connection = connections.getConnection()) {
+            new DocumentDAO(connection).importDocuments(userId, pending);
+        }
+        imported += pending.size();
+        pending.clear();
+    }
+}
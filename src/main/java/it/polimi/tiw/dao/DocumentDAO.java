@@ -1,15 +1,71 @@
 package it.polimi.tiw.dao;
 
 import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.DocumentMoveResult;
 import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.enums.MoveOutcome;
+import it.polimi.tiw.utils.InputValidator;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
 
 /**
  * This class is the Data Access Object for the Document
  */
 public class DocumentDAO {
 
+    /**
+     * Characters allowed in a format: anything but whitespaces and dots.
+     */
+    private static final IntPredicate FORMAT_CHARACTER = InputValidator.WHITESPACE.or(c -> c == '.').negate();
+
+    /**
+     * Query of {@link #getOwnedDocument}.
+     */
+    static final String GET_OWNED_DOCUMENT_QUERY = "SELECT " + Mappings.DOCUMENT_COLUMNS + " FROM document WHERE iddocument = ? AND user_iduser = ?";
+
+    /**
+     * Query of {@link #moveOwnedDocument}.
+     */
+    static final String MOVE_OWNED_DOCUMENT_QUERY = "UPDATE document d INNER JOIN subfolder t ON t.idsubfolder = ? AND t.user_iduser = ? " +
+            "SET d.subfolder_idsubfolder = t.idsubfolder WHERE d.iddocument = ? AND d.user_iduser = ?";
+
+    /**
+     * Number of documents whose ownership is checked by a single query and moved by a single batch in a bulk move.
+     */
+    static final int BULK_CHUNK_SIZE = 500;
+
+    /**
+     * Query of {@link #moveOwnedDocuments} that locks the documents of a chunk owned by the user.
+     * The placeholders of a shorter chunk are filled repeating its last id, so the query is always the same.
+     */
+    static final String LOCK_OWNED_DOCUMENTS_QUERY = "SELECT iddocument, subfolder_idsubfolder FROM document WHERE user_iduser = ? AND iddocument IN (" +
+            String.join(", ", Collections.nCopies(BULK_CHUNK_SIZE, "?")) + ") FOR UPDATE";
+
+    /**
+     * Query of {@link #moveAllOwnedDocuments} that locks the documents of the source subFolder.
+     */
+    static final String LOCK_SUB_FOLDER_DOCUMENTS_QUERY = "SELECT iddocument, subfolder_idsubfolder FROM document WHERE subfolder_idsubfolder = ? AND user_iduser = ? ORDER BY iddocument FOR UPDATE";
+
+    /**
+     * Query of {@link #createDocument}.
+     */
+    static final String CREATE_DOCUMENT_QUERY = "INSERT INTO document (name, format, summary, creationDate, subfolder_idsubfolder, user_iduser) " +
+            "SELECT ?, ?, ?, ?, idsubfolder, user_iduser FROM subfolder WHERE idsubfolder = ?";
+
+    /**
+     * Query of {@link #importDocuments}. Unlike {@link #CREATE_DOCUMENT_QUERY} it lists the values,
+     * so the driver can rewrite a batch into a multi-row insert.
+     */
+    static final String IMPORT_DOCUMENT_QUERY = "INSERT INTO document (name, format, summary, creationDate, subfolder_idsubfolder, user_iduser) VALUES (?, ?, ?, ?, ?, ?)";
+
     /**
      * {@link Connection} to the database
      */
@@ -39,7 +95,7 @@ public class DocumentDAO {
      * @return true the format is valid, false otherwise
      */
     public static boolean checkFormat(String format) {
-        return (format != null && format.length() > 0 && format.length() <= 10) && format.matches("^[^\\s.]{1,10}$");
+        return InputValidator.consistsOf(format, 1, 10, FORMAT_CHARACTER);
     }
 
     /**
@@ -52,77 +108,58 @@ public class DocumentDAO {
     }
 
     /**
-     * This method checks if the user has the right on a document.
+     * This method returns a document only if it belongs to the specified user.
      *
      * @param userId     the id of the user.
      * @param documentId the id of the document.
-     * @return true if the user is the owner of the document. False otherwise.
-     * @throws SQLException if an error occurs during the query
-     */
-    public boolean checkOwner(int userId, int documentId) throws SQLException {
-        String query = "SELECT user_iduser FROM (document d INNER JOIN subfolder s ON d.subfolder_idsubfolder = s.idsubfolder) INNER JOIN folder f ON s.folder_idfolder = f.idfolder WHERE iddocument = ? AND user_iduser = ?";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, documentId);
-            statement.setString(2, String.valueOf(userId));
-            ResultSet resultSet = statement.executeQuery();
-            return resultSet.next();
-        }
-    }
-
-    /**
-     * This method returns a document.
-     *
-     * @param documentId the id of the document.
-     * @return the {@link Document}
+     * @return the {@link Document} or null if it does not exist or the user is not its owner.
      * @throws SQLException if an error occurs during the query
      */
-    public Document getDocument(int documentId) throws SQLException {
-        String query = "SELECT * FROM document WHERE iddocument = ?";
+    public Document getOwnedDocument(int userId, int documentId) throws SQLException {
+        String query = GET_OWNED_DOCUMENT_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, documentId);
+            statement.setInt(2, userId);
             ResultSet resultSet = statement.executeQuery();
 
-            if (!resultSet.isBeforeFirst())
-                return null;
-            resultSet.next();
-            return new Document(resultSet.getInt("iddocument"),
-                    resultSet.getString("name"),
-                    resultSet.getString("format"),
-                    resultSet.getString("summary"),
-                    resultSet.getDate("creationDate"),
-                    resultSet.getInt("subfolder_idsubfolder")
-            );
+            return resultSet.next() ? Mappings.DOCUMENT.map(resultSet) : null;
         }
     }
 
     /**
-     * This method moves a {@link Document} to a specified {@link SubFolder}.
+     * This method moves a {@link Document} to a specified {@link SubFolder} only if both belong to the specified user.
+     * The ownership checks and the update are done in a single statement that reads the owner of the document
+     * and of the subFolder from their own rows, so the owner of the document does not change.
      *
+     * @param userId      the id of the user.
      * @param documentId  the id of the {@link Document}.
-     * @param subFolderId the id of the {@link SubFolder}.
+     * @param subFolderId the id of the destination {@link SubFolder}.
+     * @return true if the document has been moved, false if one of them does not exist or the user is not the owner.
      * @throws SQLException if an error occurs during the query.
      */
-    public boolean moveDocument(int documentId, int subFolderId) throws SQLException {
-        String query = "UPDATE document SET subfolder_idsubfolder = ? WHERE iddocument = ?";
+    public boolean moveOwnedDocument(int userId, int documentId, int subFolderId) throws SQLException {
+        String query = MOVE_OWNED_DOCUMENT_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, subFolderId);
-            statement.setInt(2, documentId);
+            statement.setInt(2, userId);
+            statement.setInt(3, documentId);
+            statement.setInt(4, userId);
             return statement.executeUpdate() > 0;
         }
     }
 
     /**
-     * This method insert into the database a new {@link Document}.
+     * This method insert into the database a new {@link Document}, owned by the owner of its subFolder.
      *
      * @param name        the name of the document.
      * @param format      the format of the document.
      * @param summary     the summary of the document.
      * @param subFolderId the id of the subFolder.
-     * @return true if the document has been inserted, false otherwise.
+     * @return true if the document has been inserted, false otherwise (e.g. if the subFolder does not exist).
      * @throws SQLException if an error occurs during the query.
      */
     public boolean createDocument(String name, String format, String summary, int subFolderId) throws SQLException {
-        String query = "INSERT INTO document (name, format, summary, creationDate, subfolder_idsubfolder) VALUES (?, ?, ?, ?, ?)";
+        String query = CREATE_DOCUMENT_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, name);
             statement.setString(2, format);
@@ -133,4 +170,170 @@ public class DocumentDAO {
             return statement.executeUpdate() > 0;
         }
     }
+
+    /**
+     * This method inserts a batch of imported {@link Document}s in a single transaction.
+     * With {@code rewriteBatchedStatements} the driver sends the batch as a single multi-row insert.
+     *
+     * @param userId    the id of the user, who must own the subFolders of the documents.
+     * @param documents the {@link Document}s, already validated, whose ids are ignored.
+     * @throws SQLException if an error occurs during the insert, in which case no document is inserted.
+     */
+    public void importDocuments(int userId, List<Document> documents) throws SQLException {
+        inTransaction(() -> {
+            try (PreparedStatement statement = connection.prepareStatement(IMPORT_DOCUMENT_QUERY)) {
+                for (Document document : documents) {
+                    statement.setString(1, document.name());
+                    statement.setString(2, document.format());
+                    statement.setString(3, document.summary());
+                    statement.setDate(4, document.creationDate());
+                    statement.setInt(5, document.subFolderId());
+                    statement.setInt(6, userId);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * This method moves many {@link Document}s to a specified {@link SubFolder} in a single transaction.
+     * The ownership of the documents is checked and their rows locked with one query per chunk of ids, then the
+     * documents are moved with a JDBC batch per chunk. Ids that do not belong to the user are reported, not moved.
+     *
+     * @param userId      the id of the user.
+     * @param documentIds the ids of the {@link Document}s.
+     * @param subFolderId the id of the destination {@link SubFolder}, which must belong to the user.
+     * @return the {@link DocumentMoveResult} of each distinct id, in the order of the ids.
+     * @throws SQLException if an error occurs during the queries, in which case no document is moved.
+     */
+    public List<DocumentMoveResult> moveOwnedDocuments(int userId, Collection<Integer> documentIds, int subFolderId) throws SQLException {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(documentIds));
+        return inTransaction(() -> {
+            Map<Integer, Integer> owned = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(LOCK_OWNED_DOCUMENTS_QUERY)) {
+                for (int from = 0; from < ids.size(); from += BULK_CHUNK_SIZE) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + BULK_CHUNK_SIZE, ids.size()));
+                    statement.setInt(1, userId);
+                    for (int i = 0; i < BULK_CHUNK_SIZE; i++)
+                        statement.setInt(i + 2, chunk.get(Math.min(i, chunk.size() - 1)));
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next())
+                            owned.put(resultSet.getInt(1), resultSet.getInt(2));
+                    }
+                }
+            }
+            return moveLocked(userId, ids, owned, subFolderId);
+        });
+    }
+
+    /**
+     * This method moves all the {@link Document}s of a {@link SubFolder} to another one in a single transaction,
+     * see {@link #moveOwnedDocuments}.
+     *
+     * @param userId          the id of the user.
+     * @param fromSubFolderId the id of the source {@link SubFolder}.
+     * @param subFolderId     the id of the destination {@link SubFolder}, which must belong to the user.
+     * @param maxDocuments    the maximum number of documents to move.
+     * @return the {@link DocumentMoveResult} of each document of the source, or null if it has more than {@code maxDocuments}.
+     * @throws SQLException if an error occurs during the queries, in which case no document is moved.
+     */
+    public List<DocumentMoveResult> moveAllOwnedDocuments(int userId, int fromSubFolderId, int subFolderId, int maxDocuments) throws SQLException {
+        return inTransaction(() -> {
+            List<Integer> ids = new ArrayList<>();
+            Map<Integer, Integer> owned = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(LOCK_SUB_FOLDER_DOCUMENTS_QUERY)) {
+                statement.setInt(1, fromSubFolderId);
+                statement.setInt(2, userId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        if (ids.size() == maxDocuments)
+                            return null;
+                        ids.add(resultSet.getInt(1));
+                        owned.put(resultSet.getInt(1), resultSet.getInt(2));
+                    }
+                }
+            }
+            return moveLocked(userId, ids, owned, subFolderId);
+        });
+    }
+
+    /**
+     * Moves the documents locked by the current transaction with a JDBC batch per chunk.
+     *
+     * @param userId      the id of the user.
+     * @param ids         the ids of the documents to move.
+     * @param owned       the current subFolder of each of the ids owned by the user.
+     * @param subFolderId the id of the destination {@link SubFolder}.
+     * @return the {@link DocumentMoveResult} of each id.
+     * @throws SQLException if an error occurs during the update.
+     */
+    private List<DocumentMoveResult> moveLocked(int userId, List<Integer> ids, Map<Integer, Integer> owned, int subFolderId) throws SQLException {
+        Map<Integer, MoveOutcome> outcomes = new HashMap<>();
+        List<Integer> toMove = new ArrayList<>();
+        for (int id : ids) {
+            Integer current = owned.get(id);
+            if (current == null)
+                outcomes.put(id, MoveOutcome.NOT_FOUND);
+            else if (current == subFolderId)
+                outcomes.put(id, MoveOutcome.UNCHANGED);
+            else
+                toMove.add(id);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(MOVE_OWNED_DOCUMENT_QUERY)) {
+            for (int from = 0; from < toMove.size(); from += BULK_CHUNK_SIZE) {
+                List<Integer> chunk = toMove.subList(from, Math.min(from + BULK_CHUNK_SIZE, toMove.size()));
+                for (int id : chunk) {
+                    statement.setInt(1, subFolderId);
+                    statement.setInt(2, userId);
+                    statement.setInt(3, id);
+                    statement.setInt(4, userId);
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < chunk.size(); i++) {
+                    boolean moved = i >= counts.length || counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+                    outcomes.put(chunk.get(i), moved ? MoveOutcome.MOVED : MoveOutcome.NOT_FOUND);
+                }
+            }
+        }
+        List<DocumentMoveResult> results = new ArrayList<>(ids.size());
+        for (int id : ids)
+            results.add(new DocumentMoveResult(id, owned.getOrDefault(id, 0), outcomes.get(id)));
+        return results;
+    }
+
+    /**
+     * A unit of work run in a transaction.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    private interface Work<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Runs a unit of work in a transaction, committing it if it completes and rolling it back otherwise.
+     *
+     * @param work the unit of work.
+     * @param <T>  the type of the result.
+     * @return the result of the work.
+     * @throws SQLException if an error occurs during the work or the commit.
+     */
+    private <T> T inTransaction(Work<T> work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
 }
@@ -1,7 +1,9 @@
 package it.polimi.tiw.dao;
 
+import it.polimi.tiw.beans.Document;
 import it.polimi.tiw.beans.Folder;
 import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.beans.TreeEntry;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -14,6 +16,65 @@ import java.util.*;
  * This class is the Data Access Object for the Folder.
  */
 public class FolderDAO {
+    /**
+     * Query of {@link #checkOwner}.
+     */
+    static final String CHECK_OWNER_QUERY = "SELECT idfolder FROM folder WHERE idfolder = ? AND user_iduser = ?";
+
+    /**
+     * Query of {@link #getFolder}.
+     */
+    static final String GET_FOLDER_QUERY = "SELECT " + Mappings.FOLDER_COLUMNS + " FROM folder WHERE idfolder = ?";
+
+    /**
+     * Query of {@link #getOwnedFolder}.
+     */
+    static final String GET_OWNED_FOLDER_QUERY = "SELECT " + Mappings.FOLDER_COLUMNS + " FROM folder WHERE idfolder = ? AND user_iduser = ?";
+
+    /**
+     * Query of {@link #getFoldersWithSubFolders}.
+     */
+    static final String GET_FOLDERS_WITH_SUB_FOLDERS_QUERY = "SELECT " + Mappings.qualified("f", Mappings.FOLDER_COLUMNS) + ", " +
+            Mappings.qualified("s", Mappings.SUB_FOLDER_COLUMNS) + " FROM folder f LEFT JOIN subfolder s on f.idfolder = s.folder_idfolder " +
+            "WHERE f.user_iduser = ? ORDER BY f.idfolder, s.idsubfolder";
+
+    /**
+     * Reads the {@link SubFolder} columns of {@link #GET_FOLDERS_WITH_SUB_FOLDERS_QUERY}, which follow the ones of the {@link Folder}.
+     */
+    private static final RowMapper<SubFolder> TREE_SUB_FOLDER = Mappings.subFolder(Mappings.FOLDER_COLUMN_COUNT + 1);
+
+    /**
+     * Query of {@link #streamTree}.
+     */
+    static final String STREAM_TREE_QUERY = "SELECT " + Mappings.qualified("f", Mappings.FOLDER_COLUMNS) + ", " +
+            Mappings.qualified("s", Mappings.SUB_FOLDER_COLUMNS) + ", " + Mappings.qualified("d", Mappings.DOCUMENT_COLUMNS) +
+            " FROM folder f LEFT JOIN subfolder s ON s.folder_idfolder = f.idfolder LEFT JOIN document d ON d.subfolder_idsubfolder = s.idsubfolder" +
+            " WHERE f.user_iduser = ? ORDER BY f.idfolder, s.idsubfolder, d.iddocument";
+
+    /**
+     * Reads a row of {@link #STREAM_TREE_QUERY}.
+     */
+    private static final RowMapper<TreeEntry> TREE_ENTRY = new RowMapper<>() {
+        private final RowMapper<SubFolder> subFolder = Mappings.subFolder(Mappings.FOLDER_COLUMN_COUNT + 1);
+        private final RowMapper<Document> document = Mappings.document(Mappings.FOLDER_COLUMN_COUNT + Mappings.SUB_FOLDER_COLUMN_COUNT + 1);
+
+        @Override
+        public TreeEntry map(ResultSet resultSet) throws SQLException {
+            Folder folder = Mappings.FOLDER.map(resultSet);
+            resultSet.getInt(Mappings.FOLDER_COLUMN_COUNT + 1);
+            if (resultSet.wasNull())
+                return new TreeEntry(folder, null, null);
+            SubFolder sub = subFolder.map(resultSet);
+            resultSet.getInt(Mappings.FOLDER_COLUMN_COUNT + Mappings.SUB_FOLDER_COLUMN_COUNT + 1);
+            return new TreeEntry(folder, sub, resultSet.wasNull() ? null : document.map(resultSet));
+        }
+    };
+
+    /**
+     * Query of {@link #createFolder}.
+     */
+    static final String CREATE_FOLDER_QUERY = "INSERT INTO folder (name, creationDate, user_iduser) VALUES (?, ?, ?)";
+
     /**
      * {@link Connection} to the database.
      */
@@ -36,7 +97,7 @@ public class FolderDAO {
      * @throws SQLException if an error occurs during the query.
      */
     public boolean checkOwner(int id, int ownerId) throws SQLException {
-        String query = "SELECT idfolder FROM folder WHERE idfolder = ? AND user_iduser = ?";
+        String query = CHECK_OWNER_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, id);
             statement.setInt(2, ownerId);
@@ -53,53 +114,90 @@ public class FolderDAO {
      * @throws SQLException if an error occurs during the query.
      */
     public Folder getFolder(int id) throws SQLException {
-        String query = "SELECT idfolder, name, creationDate, user_iduser FROM folder WHERE idfolder = ?";
+        String query = GET_FOLDER_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                return new Folder(resultSet.getInt("idfolder"), resultSet.getString("name"),
-                        resultSet.getDate("creationDate"), resultSet.getInt("user_iduser"));
-            }
+            if (resultSet.next())
+                return Mappings.FOLDER.map(resultSet);
+        }
+        return null;
+    }
+
+    /**
+     * This method returns the {@link Folder} with the given id only if it belongs to the given owner.
+     *
+     * @param id      the id of the folder.
+     * @param ownerId the id of the owner.
+     * @return the {@link Folder} with the given id, null if it does not exist or belongs to another user.
+     * @throws SQLException if an error occurs during the query.
+     */
+    public Folder getOwnedFolder(int id, int ownerId) throws SQLException {
+        String query = GET_OWNED_FOLDER_QUERY;
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, id);
+            statement.setInt(2, ownerId);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next())
+                return Mappings.FOLDER.map(resultSet);
         }
         return null;
     }
 
     /**
      * This method returns a map of the {@link Folder}s of a specified user with the corresponding {@link SubFolder}s.
+     * The rows are ordered by folder and subfolder so the map is built in a single pass keeping that order.
      *
      * @param ownerId the id of the owner.
-     * @return a map of the {@link Folder}s of a specified user with the corresponding {@link SubFolder}s.
+     * @return an ordered map of the {@link Folder}s of a specified user with the corresponding {@link SubFolder}s.
      * @throws SQLException if an error occurs during the query.
      */
     public Map<Folder, List<SubFolder>> getFoldersWithSubFolders(int ownerId) throws SQLException {
-        String query = "SELECT * FROM folder f LEFT JOIN subfolder s on f.idfolder = s.folder_idfolder WHERE f.user_iduser = ?";
+        String query = GET_FOLDERS_WITH_SUB_FOLDERS_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, ownerId);
             ResultSet resultSet = statement.executeQuery();
-            Map<Folder, List<SubFolder>> folders = new HashMap<>();
+            Map<Folder, List<SubFolder>> folders = new LinkedHashMap<>();
+            List<SubFolder> subFolders = null;
+            int currentFolderId = 0;
+            int subFolderIdColumn = Mappings.FOLDER_COLUMN_COUNT + 1;
             while (resultSet.next()) {
-                int idfolder = resultSet.getInt("idfolder");
-                Folder folder;
-                Optional<Folder> optionalFolder = folders.keySet().stream().filter(f -> f.id() == idfolder).findFirst();
-                if (optionalFolder.isPresent()) {
-                    folder = optionalFolder.get();
-                } else {
-                    folder = new Folder(idfolder, resultSet.getString("f.name"),
-                            resultSet.getDate("f.creationDate"), resultSet.getInt("user_iduser"));
-                    folders.put(folder, new LinkedList<>());
-                }
-                if (resultSet.getString("s.name") != null) {
-                    SubFolder subFolder = new SubFolder(resultSet.getInt("idsubfolder"), resultSet.getString("s.name"),
-                            resultSet.getDate("s.creationDate"),
-                            resultSet.getInt("folder_idfolder"));
-                    folders.get(folder).add(subFolder);
+                int idfolder = resultSet.getInt(1);
+                if (subFolders == null || idfolder != currentFolderId) {
+                    subFolders = new ArrayList<>();
+                    folders.put(Mappings.FOLDER.map(resultSet), subFolders);
+                    currentFolderId = idfolder;
                 }
+                resultSet.getInt(subFolderIdColumn);
+                if (!resultSet.wasNull())
+                    subFolders.add(TREE_SUB_FOLDER.map(resultSet));
             }
             return folders;
         }
     }
 
+    /**
+     * This method returns a {@link Cursor} over the whole tree of a user: a {@link TreeEntry} for each document,
+     * ordered by folder, subFolder and document, plus one for each empty folder and subFolder.
+     * The rows are streamed from the database while the cursor is iterated, so the memory used does not depend
+     * on the size of the tree. The cursor must be closed before the {@link Connection}.
+     *
+     * @param ownerId the id of the owner.
+     * @return the {@link Cursor} of {@link TreeEntry}.
+     * @throws SQLException if an error occurs while preparing the query.
+     */
+    public Cursor<TreeEntry> streamTree(int ownerId) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(STREAM_TREE_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            statement.setFetchSize(Cursor.STREAMING_FETCH_SIZE);
+            statement.setInt(1, ownerId);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+        return new Cursor<>(statement, TREE_ENTRY, Integer.MAX_VALUE);
+    }
+
     /**
      * This method creates a new {@link Folder}.
      *
@@ -109,7 +207,7 @@ public class FolderDAO {
      * @throws SQLException if an error occurs during the query.
      */
     public boolean createFolder(String name, int ownerId) throws SQLException {
-        String query = "INSERT INTO folder (name, creationDate, user_iduser) VALUES (?, ?, ?)";
+        String query = CREATE_FOLDER_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, name);
             statement.setDate(2, new Date(new java.util.Date().getTime()));
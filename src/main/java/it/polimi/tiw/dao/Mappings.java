@@ -0,0 +1,138 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.Folder;
+import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.beans.User;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * This class contains the columns selected by the DAOs for each bean and the {@link RowMapper}s that read them.
+ * <p>
+ * A mapper reads its columns by position, in the order of the corresponding column list, starting from a given
+ * index of the projection. The positions are fixed when the query is written, so the rows are read without looking
+ * up the columns by label, and a query joining two tables maps both beans from the same row.
+ */
+abstract class Mappings {
+
+    /**
+     * Columns of a {@link Document}, read by {@link #document(int)}.
+     */
+    static final String DOCUMENT_COLUMNS = "iddocument, name, format, summary, creationDate, subfolder_idsubfolder";
+
+    /**
+     * Columns of a {@link Document} in a listing, without the summary. Read by {@link #documentItem(int)}.
+     */
+    static final String DOCUMENT_ITEM_COLUMNS = "iddocument, name, format, creationDate, subfolder_idsubfolder";
+
+    /**
+     * Columns of a {@link SubFolder}, read by {@link #subFolder(int)}.
+     */
+    static final String SUB_FOLDER_COLUMNS = "idsubfolder, name, creationDate, folder_idfolder";
+
+    /**
+     * Columns of a {@link Folder}, read by {@link #folder(int)}.
+     */
+    static final String FOLDER_COLUMNS = "idfolder, name, creationDate, user_iduser";
+
+    /**
+     * Columns of a {@link User}, read by {@link #user(int)}.
+     */
+    static final String USER_COLUMNS = "iduser, username, email, name, surname";
+
+    /**
+     * Number of columns in {@link #FOLDER_COLUMNS}.
+     */
+    static final int FOLDER_COLUMN_COUNT = 4;
+
+    /**
+     * Number of columns in {@link #SUB_FOLDER_COLUMNS}.
+     */
+    static final int SUB_FOLDER_COLUMN_COUNT = 4;
+
+    /**
+     * Number of columns in {@link #USER_COLUMNS}.
+     */
+    static final int USER_COLUMN_COUNT = 5;
+
+    static final RowMapper<Document> DOCUMENT = document(1);
+    static final RowMapper<Document> DOCUMENT_ITEM = documentItem(1);
+    static final RowMapper<SubFolder> SUB_FOLDER = subFolder(1);
+    static final RowMapper<Folder> FOLDER = folder(1);
+    static final RowMapper<User> USER = user(1);
+
+    /**
+     * This method qualifies a list of columns with the alias of their table.
+     *
+     * @param alias   the alias of the table.
+     * @param columns the columns separated by commas.
+     * @return the qualified columns, e.g. {@code d.iddocument, d.name}.
+     */
+    static String qualified(String alias, String columns) {
+        return Arrays.stream(columns.split(",\\s*"))
+                .map(column -> alias + "." + column)
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * @param first the position of the first column of {@link #DOCUMENT_COLUMNS}.
+     * @return the {@link RowMapper} of a {@link Document}.
+     */
+    static RowMapper<Document> document(int first) {
+        return resultSet -> new Document(resultSet.getInt(first),
+                resultSet.getString(first + 1),
+                resultSet.getString(first + 2),
+                resultSet.getString(first + 3),
+                resultSet.getDate(first + 4),
+                resultSet.getInt(first + 5));
+    }
+
+    /**
+     * @param first the position of the first column of {@link #DOCUMENT_ITEM_COLUMNS}.
+     * @return the {@link RowMapper} of a {@link Document} whose summary is null.
+     */
+    static RowMapper<Document> documentItem(int first) {
+        return resultSet -> new Document(resultSet.getInt(first),
+                resultSet.getString(first + 1),
+                resultSet.getString(first + 2),
+                null,
+                resultSet.getDate(first + 3),
+                resultSet.getInt(first + 4));
+    }
+
+    /**
+     * @param first the position of the first column of {@link #SUB_FOLDER_COLUMNS}.
+     * @return the {@link RowMapper} of a {@link SubFolder}.
+     */
+    static RowMapper<SubFolder> subFolder(int first) {
+        return resultSet -> new SubFolder(resultSet.getInt(first),
+                resultSet.getString(first + 1),
+                resultSet.getDate(first + 2),
+                resultSet.getInt(first + 3));
+    }
+
+    /**
+     * @param first the position of the first column of {@link #FOLDER_COLUMNS}.
+     * @return the {@link RowMapper} of a {@link Folder}.
+     */
+    static RowMapper<Folder> folder(int first) {
+        return resultSet -> new Folder(resultSet.getInt(first),
+                resultSet.getString(first + 1),
+                resultSet.getDate(first + 2),
+                resultSet.getInt(first + 3));
+    }
+
+    /**
+     * @param first the position of the first column of {@link #USER_COLUMNS}.
+     * @return the {@link RowMapper} of a {@link User}.
+     */
+    static RowMapper<User> user(int first) {
+        return resultSet -> new User(resultSet.getInt(first),
+                resultSet.getString(first + 1),
+                resultSet.getString(first + 2),
+                resultSet.getString(first + 3),
+                resultSet.getString(first + 4));
+    }
+}
@@ -0,0 +1,89 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.enums.DocumentSort;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class names the queries of the DAOs after the DAO and the method that runs them, so that the metrics
+ * of the statements can be reported per DAO method instead of per query text.
+ */
+public abstract class QueryNames {
+
+    /**
+     * The DAO and the method of a query.
+     *
+     * @param dao    the simple name of the DAO.
+     * @param method the name of the method.
+     */
+    public record Name(String dao, String method) {
+    }
+
+    /**
+     * The name of the queries that do not belong to a DAO, as the ones of the schema migrations.
+     */
+    public static final Name OTHER = new Name("other", "other");
+
+    private static final Map<String, Name> NAMES = createNames();
+
+    /**
+     * This method returns the name of a query.
+     *
+     * @param sql the query.
+     * @return the {@link Name} of the query, {@link #OTHER} if it does not belong to a DAO.
+     */
+    public static Name of(String sql) {
+        return NAMES.getOrDefault(sql, OTHER);
+    }
+
+    /**
+     * @return the names of the queries of the DAOs.
+     */
+    private static Map<String, Name> createNames() {
+        Map<String, Name> names = new HashMap<>();
+        put(names, "DocumentDAO", "getOwnedDocument", DocumentDAO.GET_OWNED_DOCUMENT_QUERY);
+        put(names, "DocumentDAO", "moveOwnedDocument", DocumentDAO.MOVE_OWNED_DOCUMENT_QUERY);
+        put(names, "DocumentDAO", "moveOwnedDocuments", DocumentDAO.LOCK_OWNED_DOCUMENTS_QUERY);
+        put(names, "DocumentDAO", "moveAllOwnedDocuments", DocumentDAO.LOCK_SUB_FOLDER_DOCUMENTS_QUERY);
+        put(names, "DocumentDAO", "createDocument", DocumentDAO.CREATE_DOCUMENT_QUERY);
+        put(names, "DocumentDAO", "importDocuments", DocumentDAO.IMPORT_DOCUMENT_QUERY);
+        put(names, "FolderDAO", "checkOwner", FolderDAO.CHECK_OWNER_QUERY);
+        put(names, "FolderDAO", "getFolder", FolderDAO.GET_FOLDER_QUERY);
+        put(names, "FolderDAO", "getOwnedFolder", FolderDAO.GET_OWNED_FOLDER_QUERY);
+        put(names, "FolderDAO", "getFoldersWithSubFolders", FolderDAO.GET_FOLDERS_WITH_SUB_FOLDERS_QUERY);
+        put(names, "FolderDAO", "streamTree", FolderDAO.STREAM_TREE_QUERY);
+        put(names, "FolderDAO", "createFolder", FolderDAO.CREATE_FOLDER_QUERY);
+        put(names, "SubFolderDAO", "checkOwner", SubFolderDAO.CHECK_OWNER_QUERY);
+        put(names, "SubFolderDAO", "createSubFolder", SubFolderDAO.CREATE_SUB_FOLDER_QUERY);
+        put(names, "SubFolderDAO", "getOwnedSubFolder", SubFolderDAO.GET_OWNED_SUB_FOLDER_QUERY);
+        for (DocumentSort sort : DocumentSort.values()) {
+            put(names, "SubFolderDAO", "streamDocuments", SubFolderDAO.getDocumentsPageQuery(sort, false));
+            put(names, "SubFolderDAO", "streamDocuments", SubFolderDAO.getDocumentsPageQuery(sort, true));
+        }
+        put(names, "UserDAO", "getCredentials", UserDAO.GET_CREDENTIALS_BY_EMAIL_QUERY);
+        put(names, "UserDAO", "getCredentials", UserDAO.GET_CREDENTIALS_BY_USERNAME_QUERY);
+        put(names, "UserDAO", "updatePassword", UserDAO.UPDATE_PASSWORD_QUERY);
+        put(names, "UserDAO", "doesUsernameExist", UserDAO.DOES_USERNAME_EXIST_QUERY);
+        put(names, "UserDAO", "doesEmailExist", UserDAO.DOES_EMAIL_EXIST_QUERY);
+        put(names, "UserDAO", "addUser", UserDAO.ADD_USER_QUERY);
+        put(names, "SessionDAO", "getSession", SessionDAO.GET_SESSION_QUERY);
+        put(names, "SessionDAO", "createSession", SessionDAO.CREATE_SESSION_QUERY);
+        put(names, "SessionDAO", "extendSessions", SessionDAO.EXTEND_SESSION_QUERY);
+        put(names, "SessionDAO", "deleteSession", SessionDAO.DELETE_SESSION_QUERY);
+        put(names, "SessionDAO", "deleteExpiredSessions", SessionDAO.DELETE_EXPIRED_SESSIONS_QUERY);
+        return Map.copyOf(names);
+    }
+
+    /**
+     * Names a query.
+     *
+     * @param names  the names of the queries.
+     * @param dao    the simple name of the DAO.
+     * @param method the name of the method.
+     * @param sql    the query.
+     */
+    private static void put(Map<String, Name> names, String dao, String method, String sql) {
+        names.put(sql, new Name(dao, method));
+    }
+}
@@ -0,0 +1,91 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.enums.DocumentSort;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class checks with {@code EXPLAIN} that every query of the DAOs is answered through an index.
+ * A query that reads a whole table is reported, so a missing index is found at startup instead of under load.
+ * <p>
+ * MySQL routinely scans the tables that are empty or small even when a suitable index exists, so a scan is only
+ * reported when the table is estimated to have at least {@link #MIN_SCANNED_ROWS} rows: the check is meaningful on
+ * a database with production-like data, not on a fresh one.
+ */
+public abstract class QueryPlanVerifier {
+
+    /**
+     * The estimated rows under which a full scan is the choice of the optimizer rather than a missing index.
+     */
+    static final long MIN_SCANNED_ROWS = 1000;
+
+    /**
+     * This method explains every read and update query of the DAOs with sample parameters.
+     *
+     * @param connection the {@link Connection} to the database.
+     * @return the description of the queries that scan a whole table of at least {@link #MIN_SCANNED_ROWS} rows,
+     * empty if none does.
+     * @throws SQLException if a query cannot be explained.
+     */
+    public static List<String> verify(Connection connection) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        for (Map.Entry<String, Object[]> query : getQueries().entrySet()) {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query.getKey())) {
+                Object[] parameters = query.getValue();
+                for (int i = 0; i < parameters.length; i++)
+                    statement.setObject(i + 1, parameters[i]);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        String table = resultSet.getString("table");
+                        if ("ALL".equals(resultSet.getString("type")) && table != null && !table.startsWith("<")
+                                && resultSet.getLong("rows") >= MIN_SCANNED_ROWS)
+                            problems.add("Full scan of " + table + " in: " + query.getKey());
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * @return the queries of the DAOs with a sample value for each parameter.
+     */
+    private static Map<String, Object[]> getQueries() {
+        Map<String, Object[]> queries = new LinkedHashMap<>();
+        queries.put(DocumentDAO.GET_OWNED_DOCUMENT_QUERY, new Object[]{1, 1});
+        queries.put(DocumentDAO.MOVE_OWNED_DOCUMENT_QUERY, new Object[]{1, 1, 1, 1});
+        Object[] lockParameters = new Object[DocumentDAO.BULK_CHUNK_SIZE + 1];
+        Arrays.fill(lockParameters, 1);
+        queries.put(DocumentDAO.LOCK_OWNED_DOCUMENTS_QUERY, lockParameters);
+        queries.put(DocumentDAO.LOCK_SUB_FOLDER_DOCUMENTS_QUERY, new Object[]{1, 1});
+        queries.put(FolderDAO.CHECK_OWNER_QUERY, new Object[]{1, 1});
+        queries.put(FolderDAO.GET_FOLDER_QUERY, new Object[]{1});
+        queries.put(FolderDAO.GET_OWNED_FOLDER_QUERY, new Object[]{1, 1});
+        queries.put(FolderDAO.GET_FOLDERS_WITH_SUB_FOLDERS_QUERY, new Object[]{1});
+        queries.put(FolderDAO.STREAM_TREE_QUERY, new Object[]{1});
+        queries.put(SubFolderDAO.CHECK_OWNER_QUERY, new Object[]{1, 1});
+        queries.put(SubFolderDAO.GET_OWNED_SUB_FOLDER_QUERY, new Object[]{1, 1});
+        for (DocumentSort sort : DocumentSort.values()) {
+            queries.put(SubFolderDAO.getDocumentsPageQuery(sort, false), new Object[]{1, 51});
+            Object key = sort == DocumentSort.NAME ? "document" : Date.valueOf("2022-01-01");
+            queries.put(SubFolderDAO.getDocumentsPageQuery(sort, true), new Object[]{1, key, key, 1, 51});
+        }
+        queries.put(SessionDAO.GET_SESSION_QUERY, new Object[]{"", 1L});
+        queries.put(SessionDAO.EXTEND_SESSION_QUERY, new Object[]{1L, "", 1L, 1L});
+        queries.put(UserDAO.GET_CREDENTIALS_BY_EMAIL_QUERY, new Object[]{"user@example.com"});
+        queries.put(UserDAO.GET_CREDENTIALS_BY_USERNAME_QUERY, new Object[]{"user"});
+        queries.put(UserDAO.UPDATE_PASSWORD_QUERY, new Object[]{"", 1});
+        queries.put(UserDAO.DOES_USERNAME_EXIST_QUERY, new Object[]{"user"});
+        queries.put(UserDAO.DOES_EMAIL_EXIST_QUERY, new Object[]{"user@example.com"});
+        return queries;
+    }
+}
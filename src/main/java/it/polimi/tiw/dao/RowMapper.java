@@ -0,0 +1,22 @@
+package it.polimi.tiw.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This interface maps the current row of a {@link ResultSet} to a bean.
+ *
+ * @param <T> the type of the bean.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row of the {@link ResultSet}.
+     *
+     * @param resultSet the {@link ResultSet} positioned on the row to map.
+     * @return the bean.
+     * @throws SQLException if an error occurs while reading the row.
+     */
+    T map(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,148 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.beans.StoredSession;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.utils.UserSerializer;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * This class is the Data Access Object for the sessions of the JDBC session store.
+ * The {@link User} of a session is kept in the binary form of {@link UserSerializer}.
+ */
+public class SessionDAO {
+
+    /**
+     * Query of {@link #getSession}.
+     */
+    static final String GET_SESSION_QUERY = "SELECT data, expires_at FROM user_session WHERE id = ? AND expires_at > ?";
+
+    /**
+     * Query of {@link #createSession}.
+     */
+    static final String CREATE_SESSION_QUERY = "INSERT INTO user_session (id, data, expires_at) VALUES (?, ?, ?)";
+
+    /**
+     * Query of {@link #extendSessions}. A session is never shortened, nor revived once expired.
+     */
+    static final String EXTEND_SESSION_QUERY = "UPDATE user_session SET expires_at = ? WHERE id = ? AND expires_at > ? AND expires_at < ?";
+
+    /**
+     * Query of {@link #deleteSession}.
+     */
+    static final String DELETE_SESSION_QUERY = "DELETE FROM user_session WHERE id = ?";
+
+    /**
+     * Query of {@link #deleteExpiredSessions}, limited so that a long backlog does not lock the table for long.
+     */
+    static final String DELETE_EXPIRED_SESSIONS_QUERY = "DELETE FROM user_session WHERE expires_at <= ? LIMIT 1000";
+
+    /**
+     * {@link Connection} to the database.
+     */
+    private final Connection connection;
+
+    /**
+     * Constructor.
+     *
+     * @param connection the {@link Connection} to the database.
+     */
+    public SessionDAO(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * This method returns a session that has not expired.
+     *
+     * @param id  the id of the session.
+     * @param now the current time in seconds.
+     * @return the {@link StoredSession} or null if it does not exist, has expired or cannot be read.
+     * @throws SQLException if an error occurs during the query.
+     */
+    public StoredSession getSession(String id, long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(GET_SESSION_QUERY)) {
+            statement.setString(1, id);
+            statement.setLong(2, now);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next())
+                    return null;
+                try {
+                    return new StoredSession(UserSerializer.fromBytes(resultSet.getBytes(1)), resultSet.getLong(2));
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method creates a session.
+     *
+     * @param id        the id of the session.
+     * @param user      the logged {@link User}.
+     * @param expiresAt the time in seconds after which the session is no longer valid.
+     * @throws SQLException if an error occurs during the insert.
+     */
+    public void createSession(String id, User user, long expiresAt) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(CREATE_SESSION_QUERY)) {
+            statement.setString(1, id);
+            statement.setBytes(2, UserSerializer.toBytes(user));
+            statement.setLong(3, expiresAt);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * This method extends the expiration of many sessions with a single JDBC batch.
+     *
+     * @param expirations the new expiration time in seconds of each session, by id.
+     * @param now         the current time in seconds.
+     * @throws SQLException if an error occurs during the update.
+     */
+    public void extendSessions(Map<String, Long> expirations, long now) throws SQLException {
+        if (expirations.isEmpty())
+            return;
+        try (PreparedStatement statement = connection.prepareStatement(EXTEND_SESSION_QUERY)) {
+            for (Map.Entry<String, Long> expiration : expirations.entrySet()) {
+                statement.setLong(1, expiration.getValue());
+                statement.setString(2, expiration.getKey());
+                statement.setLong(3, now);
+                statement.setLong(4, expiration.getValue());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * This method deletes a session.
+     *
+     * @param id the id of the session.
+     * @throws SQLException if an error occurs during the delete.
+     */
+    public void deleteSession(String id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE_SESSION_QUERY)) {
+            statement.setString(1, id);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * This method deletes a batch of expired sessions.
+     *
+     * @param now the current time in seconds.
+     * @return the number of sessions deleted.
+     * @throws SQLException if an error occurs during the delete.
+     */
+    public int deleteExpiredSessions(long now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE_EXPIRED_SESSIONS_QUERY)) {
+            statement.setLong(1, now);
+            return statement.executeUpdate();
+        }
+    }
+}
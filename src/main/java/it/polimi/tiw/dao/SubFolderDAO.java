@@ -1,8 +1,11 @@
 package it.polimi.tiw.dao;
 
 import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.DocumentPage;
+import it.polimi.tiw.beans.DocumentPosition;
 import it.polimi.tiw.beans.SubFolder;
 import it.polimi.tiw.beans.User;
+import it.polimi.tiw.enums.DocumentSort;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -13,6 +16,27 @@ import java.util.List;
  */
 public class SubFolderDAO {
 
+    /**
+     * Query of {@link #checkOwner}.
+     */
+    static final String CHECK_OWNER_QUERY = "SELECT user_iduser FROM subfolder WHERE idsubfolder = ? AND user_iduser = ?";
+
+    /**
+     * Query of {@link #createSubFolder}.
+     */
+    static final String CREATE_SUB_FOLDER_QUERY = "INSERT INTO subfolder(name, creationDate, folder_idfolder, user_iduser) " +
+            "SELECT ?, ?, idfolder, user_iduser FROM folder WHERE idfolder = ?";
+
+    /**
+     * Query of {@link #getOwnedSubFolder}.
+     */
+    static final String GET_OWNED_SUB_FOLDER_QUERY = "SELECT " + Mappings.SUB_FOLDER_COLUMNS + " FROM subfolder WHERE idsubfolder = ? AND user_iduser = ?";
+
+    /**
+     * Columns selected by {@link #getDocumentsPageQuery}.
+     */
+    private static final String PAGE_COLUMNS = Mappings.qualified("d", Mappings.DOCUMENT_ITEM_COLUMNS);
+
     /**
      * {@link Connection} to the database
      */
@@ -46,7 +70,7 @@ public class SubFolderDAO {
      * @throws SQLException if an error occurs during the query.
      */
     public boolean checkOwner(int userId, int subFolderId) throws SQLException {
-        String query = "SELECT u.iduser FROM (subfolder s INNER JOIN folder f ON s.folder_idfolder = f.idfolder) INNER JOIN user u ON u.iduser = f.user_iduser WHERE s.idsubfolder = ? AND u.iduser = ?";
+        String query = CHECK_OWNER_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, subFolderId);
             statement.setInt(2, userId);
@@ -59,43 +83,100 @@ public class SubFolderDAO {
 
 
     /**
-     * This method returns all {@link Document}(s) in a specified subFolder.
+     * This method returns a page of the {@link Document}(s) in a specified subFolder using keyset pagination.
+     * The documents are read without their summary.
+     * The page starts right after the position of the last document of the previous page in the chosen order,
+     * so the cost of a page does not depend on its position in the subFolder, and the page is the same even if that
+     * document has been moved or deleted meanwhile.
      *
      * @param subFolderId the id of the subFolder.
-     * @return {@link List} of {@link Document}.
+     * @param sort        the order of the documents.
+     * @param after       the position of the last document of the previous page, null for the first page.
+     * @param limit       the maximum number of documents in the page.
+     * @return the {@link DocumentPage}.
      * @throws SQLException if an error occurs during the query.
      */
-    public List<Document> getDocuments(int subFolderId) throws SQLException {
-        String query = "SELECT * FROM document WHERE subfolder_idsubfolder = ?";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, subFolderId);
-            ResultSet resultSet = statement.executeQuery();
-
-            List<Document> documents = new ArrayList<>();
-            while (resultSet.next()) {
-                Document document = new Document(resultSet.getInt("iddocument"),
-                        resultSet.getString("name"),
-                        resultSet.getString("format"),
-                        resultSet.getString("summary"),
-                        resultSet.getDate("creationDate"),
-                        subFolderId);
+    public DocumentPage getDocuments(int subFolderId, DocumentSort sort, DocumentPosition after, int limit) throws SQLException {
+        try (Cursor<Document> cursor = streamDocuments(subFolderId, sort, after, limit)) {
+            List<Document> documents = new ArrayList<>(limit);
+            for (Document document : cursor)
                 documents.add(document);
+            return new DocumentPage(documents, cursor.hasMore());
+        }
+    }
+
+    /**
+     * This method returns a {@link Cursor} over a page of the {@link Document}(s) in a specified subFolder.
+     * The rows are streamed from the database while the cursor is iterated, see {@link #getDocuments(int, DocumentSort, DocumentPosition, int)}.
+     * The cursor must be closed before the {@link Connection}.
+     *
+     * @param subFolderId the id of the subFolder.
+     * @param sort        the order of the documents.
+     * @param after       the position of the last document of the previous page, null for the first page.
+     * @param limit       the maximum number of documents in the page.
+     * @return the {@link Cursor} of {@link Document}.
+     * @throws SQLException if an error occurs while preparing the query.
+     */
+    public Cursor<Document> streamDocuments(int subFolderId, DocumentSort sort, DocumentPosition after, int limit) throws SQLException {
+        String query = getDocumentsPageQuery(sort, after != null);
+        PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            statement.setFetchSize(Cursor.STREAMING_FETCH_SIZE);
+            int index = 1;
+            statement.setInt(index++, subFolderId);
+            if (after != null) {
+                statement.setObject(index++, after.key());
+                statement.setObject(index++, after.key());
+                statement.setInt(index++, after.id());
             }
-            return documents;
+            statement.setInt(index, limit + 1);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
         }
+        return new Cursor<>(statement, Mappings.DOCUMENT_ITEM, limit);
     }
 
     /**
-     * This method create a new {@link it.polimi.tiw.beans.SubFolder} in the database.
+     * This method builds the query of a page of documents.
+     *
+     * @param sort  the order of the documents.
+     * @param after true if the page starts after a given position, false for the first page.
+     * @return the query, whose parameters are the id of the subFolder, the key of the position twice and its id
+     * (only if {@code after} is true) and the maximum number of rows.
+     */
+    static String getDocumentsPageQuery(DocumentSort sort, boolean after) {
+        String order;
+        String afterCondition;
+        switch (sort) {
+            case NEWEST -> {
+                order = " ORDER BY d.creationDate DESC, d.iddocument DESC";
+                afterCondition = " AND (d.creationDate < ? OR (d.creationDate = ? AND d.iddocument < ?))";
+            }
+            case NAME -> {
+                order = " ORDER BY d.name, d.iddocument";
+                afterCondition = " AND (d.name > ? OR (d.name = ? AND d.iddocument > ?))";
+            }
+            default -> {
+                order = " ORDER BY d.creationDate, d.iddocument";
+                afterCondition = " AND (d.creationDate > ? OR (d.creationDate = ? AND d.iddocument > ?))";
+            }
+        }
+        return "SELECT " + PAGE_COLUMNS + " FROM document d WHERE d.subfolder_idsubfolder = ?"
+                + (after ? afterCondition : "") + order + " LIMIT ?";
+    }
+
+    /**
+     * This method create a new {@link it.polimi.tiw.beans.SubFolder} in the database, owned by the owner of its folder.
      *
      * @param name         the name of the subfolder.
      * @param creationDate the date of the creation.
      * @param folderID     the id of the {@link it.polimi.tiw.beans.Folder} that contains the new {@link it.polimi.tiw.beans.SubFolder}
-     * @return true if the subFolder has been inserted, false otherwise.
+     * @return true if the subFolder has been inserted, false otherwise (e.g. if the folder does not exist).
      * @throws SQLException if an error occurs during the query.
      */
     public boolean createSubFolder(String name, Date creationDate, int folderID) throws SQLException {
-        String query = "INSERT INTO subfolder(name, creationDate, folder_idfolder) VALUES (?, ?, ?)";
+        String query = CREATE_SUB_FOLDER_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, name);
             statement.setDate(2, creationDate);
@@ -106,24 +187,22 @@ public class SubFolderDAO {
     }
 
     /**
-     * This method gets the {@link SubFolder} with the specified id.
+     * This method gets the {@link SubFolder} with the specified id only if it belongs to the specified user.
      *
+     * @param userId      the id of the user.
      * @param subFolderId the id of the subFolder.
-     * @return the {@link SubFolder} with the specified id.
+     * @return the {@link SubFolder} or null if it does not exist or the user is not its owner.
      * @throws SQLException if an error occurs during the query.
      */
-    public SubFolder getSubFolder(int subFolderId) throws SQLException {
-        String query = "SELECT * FROM subfolder WHERE idsubfolder = ?";
+    public SubFolder getOwnedSubFolder(int userId, int subFolderId) throws SQLException {
+        String query = GET_OWNED_SUB_FOLDER_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, subFolderId);
+            statement.setInt(2, userId);
             ResultSet resultSet = statement.executeQuery();
 
-            if (resultSet.next()) {
-                return new SubFolder(resultSet.getInt("idsubfolder"),
-                        resultSet.getString("name"),
-                        resultSet.getDate("creationDate"),
-                        resultSet.getInt("folder_idfolder"));
-            }
+            if (resultSet.next())
+                return Mappings.SUB_FOLDER.map(resultSet);
         }
         return null;
     }
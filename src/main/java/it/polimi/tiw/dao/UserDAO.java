@@ -1,16 +1,64 @@
 package it.polimi.tiw.dao;
 
-import it.polimi.tiw.beans.User;
+import it.polimi.tiw.beans.UserCredentials;
+import it.polimi.tiw.utils.InputValidator;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
 
 /**
  * This class is the Data Access Object for the User.
  */
 public class UserDAO {
+    /**
+     * Pattern of a valid email, compiled once.
+     */
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^(([^<>()\\[\\]\\\\.,;:\\s@\"]+(\\.[^<>()\\[\\]\\\\.,;:\\s@\"]+)*)|(\".+\"))@((\\[\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}])|(([a-zA-Z\\-\\d]+\\.)+[a-zA-Z]{2,}))$");
+
+    /**
+     * Characters allowed in a password.
+     */
+    private static final IntPredicate PASSWORD_CHARACTER = InputValidator.ALPHANUMERIC.or(c -> "@$!%*#?&.".indexOf(c) >= 0);
+
+    /**
+     * Characters allowed in a name or surname.
+     */
+    private static final IntPredicate NAME_CHARACTER = InputValidator.LETTER.or(InputValidator.WHITESPACE).or(c -> c == '\'');
+
+    /**
+     * Query of {@link #getCredentials} when the identifier is an email.
+     */
+    static final String GET_CREDENTIALS_BY_EMAIL_QUERY = "SELECT " + Mappings.USER_COLUMNS + ", password FROM user WHERE email = ?";
+
+    /**
+     * Query of {@link #getCredentials} when the identifier is a username.
+     */
+    static final String GET_CREDENTIALS_BY_USERNAME_QUERY = "SELECT " + Mappings.USER_COLUMNS + ", password FROM user WHERE username = ?";
+
+    /**
+     * Query of {@link #updatePassword}.
+     */
+    static final String UPDATE_PASSWORD_QUERY = "UPDATE user SET password = ? WHERE iduser = ?";
+
+    /**
+     * Query of {@link #doesUsernameExist}.
+     */
+    static final String DOES_USERNAME_EXIST_QUERY = "SELECT iduser FROM user WHERE username = ?";
+
+    /**
+     * Query of {@link #doesEmailExist}.
+     */
+    static final String DOES_EMAIL_EXIST_QUERY = "SELECT iduser FROM user WHERE email = ?";
+
+    /**
+     * Query of {@link #addUser}.
+     */
+    static final String ADD_USER_QUERY = "INSERT INTO user (username, email, password, name, surname) VALUES (?, ?, ?, ?, ?)";
+
     /**
      * {@link Connection} to the database.
      */
@@ -26,56 +74,51 @@ public class UserDAO {
     }
 
     /**
-     * This method checks if the username and the password are correct and returns the {@link User} if they are.
+     * This method returns the {@link UserCredentials} of the user with the given username or email in a single query.
+     * Usernames cannot contain '@', so the identifier is looked up by email if it contains one and by username otherwise,
+     * each using its own unique index. The password must be verified by the caller.
      *
-     * @param username the username of the user.
-     * @param password the password of the user.
-     * @return the {@link User} if the username and the password are correct.
+     * @param identifier the username or the email of the user.
+     * @return the {@link UserCredentials} of the user or null if it does not exist.
      * @throws SQLException if an error occurs during the query.
      */
-    public User checkUsernameCredentials(String username, String password) throws SQLException {
-        String query = "SELECT iduser, username, email, name, surname FROM user WHERE username = ? AND password = ?";
+    public UserCredentials getCredentials(String identifier) throws SQLException {
+        String query = identifier.indexOf('@') >= 0 ? GET_CREDENTIALS_BY_EMAIL_QUERY : GET_CREDENTIALS_BY_USERNAME_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setString(1, username);
-            statement.setString(2, password);
-            return getUser(statement);
+            statement.setString(1, identifier);
+            return getCredentials(statement);
         }
     }
 
     /**
-     * This method checks if the email and the password are correct and returns the {@link User} if they are.
+     * This method returns the credentials of the user selected by the statement otherwise it returns null.
      *
-     * @param email    the email of the user.
-     * @param password the password of the user.
-     * @return the {@link User} if the email and the password are correct.
-     * @throws SQLException if an error occurs during the query.
+     * @param statement the statement to execute.
+     * @return the {@link UserCredentials} or null if no user is found.
+     * @throws SQLException if an error occurs during the execution of the statement.
      */
-    public User checkEmailCredentials(String email, String password) throws SQLException {
-        String query = "SELECT iduser, username, email, name, surname FROM user WHERE email = ? AND password = ?";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setString(1, email);
-            statement.setString(2, password);
-            return getUser(statement);
+    private UserCredentials getCredentials(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next())
+                return null;
+            return new UserCredentials(Mappings.USER.map(resultSet), resultSet.getString(Mappings.USER_COLUMN_COUNT + 1));
         }
     }
 
     /**
-     * This method returns the user if the credentials are correct otherwise it returns null.
+     * This method replaces the stored password of a user.
      *
-     * @param statement the statement to execute.
-     * @return the user if the credentials are correct otherwise it returns null.
-     * @throws SQLException if an error occurs during the execution of the statement.
+     * @param userId       the id of the user.
+     * @param passwordHash the new hashed password.
+     * @return true if the password has been updated, false otherwise.
+     * @throws SQLException if an error occurs during the query.
      */
-    private User getUser(PreparedStatement statement) throws SQLException {
-        try (ResultSet resultSet = statement.executeQuery()) {
-            if (!resultSet.isBeforeFirst())
-                return null;
-            resultSet.next();
-            return new User(resultSet.getInt("iduser"),
-                    resultSet.getString("username"),
-                    resultSet.getString("email"),
-                    resultSet.getString("name"),
-                    resultSet.getString("surname"));
+    public boolean updatePassword(int userId, String passwordHash) throws SQLException {
+        String query = UPDATE_PASSWORD_QUERY;
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, passwordHash);
+            statement.setInt(2, userId);
+            return statement.executeUpdate() > 0;
         }
     }
 
@@ -87,7 +130,7 @@ public class UserDAO {
      * @throws SQLException if an error occurs during the query.
      */
     public boolean doesUsernameExist(String username) throws SQLException {
-        String query = "SELECT iduser, username, email, name, surname FROM user WHERE username = ?";
+        String query = DOES_USERNAME_EXIST_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, username);
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -104,7 +147,7 @@ public class UserDAO {
      * @throws SQLException if an error occurs during the query.
      */
     public boolean doesEmailExist(String email) throws SQLException {
-        String query = "SELECT iduser, username, email, name, surname FROM user WHERE email = ?";
+        String query = DOES_EMAIL_EXIST_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, email);
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -116,20 +159,20 @@ public class UserDAO {
     /**
      * This method inserts a new user in the database.
      *
-     * @param username the username of the user.
-     * @param email    the email of the user.
-     * @param name     the name of the user.
-     * @param surname  the surname of the user.
-     * @param password the password of the user.
-     * @return the id of the user.
+     * @param username     the username of the user.
+     * @param email        the email of the user.
+     * @param name         the name of the user.
+     * @param surname      the surname of the user.
+     * @param passwordHash the hashed password of the user.
+     * @return true if the user has been inserted, false otherwise.
      * @throws SQLException if an error occurs during the query.
      */
-    public boolean addUser(String username, String email, String name, String surname, String password) throws SQLException {
-        String query = "INSERT INTO user (username, email, password, name, surname) VALUES (?, ?, ?, ?, ?)";
+    public boolean addUser(String username, String email, String name, String surname, String passwordHash) throws SQLException {
+        String query = ADD_USER_QUERY;
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, username);
             statement.setString(2, email);
-            statement.setString(3, password);
+            statement.setString(3, passwordHash);
             statement.setString(4, name);
             statement.setString(5, surname);
             return statement.executeUpdate() > 0;
@@ -143,7 +186,7 @@ public class UserDAO {
      * @return true if the username is valid, false otherwise.
      */
     public static boolean isValidUsername(String username) {
-        return username != null && username.matches("[a-zA-Z\\d]{3,20}$");
+        return InputValidator.consistsOf(username, 3, 20, InputValidator.ALPHANUMERIC);
     }
 
     /**
@@ -153,8 +196,7 @@ public class UserDAO {
      * @return true if the email is valid, false otherwise.
      */
     public static boolean isValidEmail(String email) {
-        return email != null && email.matches("^(([^<>()\\[\\]\\\\.,;:\\s@\"]+(\\.[^<>()\\[\\]\\\\.,;:\\s@\"]+)*)|(\".+\"))@((\\[\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}])|(([a-zA-Z\\-\\d]+\\.)+[a-zA-Z]{2,}))$")
-                && email.length() <= 50;
+        return email != null && email.length() <= 50 && EMAIL_PATTERN.matcher(email).matches();
     }
 
     /**
@@ -164,7 +206,9 @@ public class UserDAO {
      * @return true if the password is valid, false otherwise.
      */
     public static boolean isValidPassword(String password) {
-        return password.matches("^(?=.*[A-Za-z])(?=.*\\d)[A-Za-z\\d@$!%*#?&.]{8,}$") && password.length() <= 50;
+        return InputValidator.consistsOf(password, 8, 50, PASSWORD_CHARACTER)
+                && InputValidator.contains(password, InputValidator.LETTER)
+                && InputValidator.contains(password, InputValidator.DIGIT);
     }
 
     /**
@@ -174,7 +218,7 @@ public class UserDAO {
      * @return true if the name is valid, false otherwise.
      */
     public static boolean isValidName(String name) {
-        return name != null && name.matches("[a-zA-Z\\s']{3,20}$");
+        return InputValidator.consistsOf(name, 3, 20, NAME_CHARACTER);
     }
 
     /**
@@ -184,6 +228,6 @@ public class UserDAO {
      * @return true if the surname is valid, false otherwise.
      */
     public static boolean isValidSurname(String surname) {
-        return surname != null && surname.matches("[a-zA-Z\\s']{3,20}$");
+        return InputValidator.consistsOf(surname, 3, 20, NAME_CHARACTER);
     }
 }
@@ -0,0 +1,45 @@
+package it.polimi.tiw.enums;
+
+/**
+ * This enum contains the ways the logged user is remembered between requests.
+ */
+public enum AuthMode {
+    /**
+     * The user is an attribute of the {@link javax.servlet.http.HttpSession}.
+     */
+    SESSION("session"),
+    /**
+     * The user is carried by a signed cookie, so no state is kept on the server.
+     */
+    TOKEN("token"),
+    /**
+     * The user is kept by a {@link it.polimi.tiw.utils.SessionStore}, identified by a random cookie.
+     */
+    STORE("store");
+
+    private final String value;
+
+    AuthMode(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the value of the mode in the context parameters.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the {@link AuthMode} corresponding to the given value or null if the value is invalid.
+     *
+     * @param value the value of the mode in the context parameters.
+     * @return the {@link AuthMode} corresponding to the given value or null if the value is invalid.
+     */
+    public static AuthMode fromValue(String value) {
+        for (AuthMode mode : values())
+            if (mode.value.equals(value))
+                return mode;
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package it.polimi.tiw.enums;
+
+/**
+ * This enum contains all the attributes shared through the ServletContext.
+ */
+public enum ContextAttributes {
+    /**
+     * The {@link it.polimi.tiw.utils.ConnectionPool} of the application.
+     */
+    CONNECTION_POOL("connectionPool"),
+    /**
+     * The {@link it.polimi.tiw.utils.FolderTreeCache} of the application.
+     */
+    FOLDER_TREE_CACHE("folderTreeCache"),
+    /**
+     * The {@link org.thymeleaf.TemplateEngine} shared by all the servlets.
+     */
+    TEMPLATE_ENGINE("templateEngine"),
+    /**
+     * The {@link it.polimi.tiw.utils.PasswordHasher} of the application.
+     */
+    PASSWORD_HASHER("passwordHasher"),
+    /**
+     * The {@link it.polimi.tiw.utils.ContentVersions} of the application.
+     */
+    CONTENT_VERSIONS("contentVersions"),
+    /**
+     * The {@link it.polimi.tiw.utils.UserSessions} of the application.
+     */
+    USER_SESSIONS("userSessions"),
+    /**
+     * The {@link it.polimi.tiw.utils.RequestExecutor} of the application.
+     */
+    REQUEST_EXECUTOR("requestExecutor"),
+    /**
+     * The {@link it.polimi.tiw.utils.MetricsRegistry} of the application.
+     */
+    METRICS_REGISTRY("metricsRegistry");
+
+    private final String value;
+
+    ContextAttributes(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the name of the attribute.
+     */
+    public String getValue() {
+        return value;
+    }
+}
@@ -1,5 +1,7 @@
 package it.polimi.tiw.enums;
 
+import javax.servlet.ServletContext;
+
 /**
  * This enum contains all the parameters in the ServletContext.
  */
@@ -19,7 +21,200 @@ public enum ContextParameters {
     /**
      * The password of the database.
      */
-    DB_PASSWORD("dbPassword");
+    DB_PASSWORD("dbPassword"),
+    /**
+     * The number of connections the pool keeps open even when idle.
+     */
+    DB_POOL_MIN_SIZE("dbPoolMinSize"),
+    /**
+     * The maximum number of connections the pool can open.
+     */
+    DB_POOL_MAX_SIZE("dbPoolMaxSize"),
+    /**
+     * The maximum time in milliseconds a request waits for a free connection.
+     */
+    DB_POOL_ACQUIRE_TIMEOUT("dbPoolAcquireTimeout"),
+    /**
+     * The time in milliseconds after which an idle connection above the minimum size is closed.
+     */
+    DB_POOL_IDLE_TIMEOUT("dbPoolIdleTimeout"),
+    /**
+     * The time in seconds allowed to validate a connection before lending it.
+     */
+    DB_POOL_VALIDATION_TIMEOUT("dbPoolValidationTimeout"),
+    /**
+     * The time in milliseconds after which a connection not returned to the pool is reported as leaked.
+     */
+    DB_POOL_LEAK_DETECTION_THRESHOLD("dbPoolLeakDetectionThreshold"),
+    /**
+     * The number of prepared statements each pooled connection keeps open for reuse, 0 to disable.
+     */
+    DB_STATEMENT_CACHE_SIZE("dbStatementCacheSize"),
+    /**
+     * The maximum time in seconds a statement runs before the driver cancels it, 0 for no limit.
+     */
+    DB_QUERY_TIMEOUT("dbQueryTimeout"),
+    /**
+     * Whether the driver caches the prepared statements ({@code cachePrepStmts}).
+     */
+    DB_CACHE_PREP_STMTS("dbCachePrepStmts"),
+    /**
+     * Whether the driver prepares the statements on the server ({@code useServerPrepStmts}).
+     */
+    DB_USE_SERVER_PREP_STMTS("dbUseServerPrepStmts"),
+    /**
+     * The number of prepared statements the driver caches per connection ({@code prepStmtCacheSize}).
+     */
+    DB_PREP_STMT_CACHE_SIZE("dbPrepStmtCacheSize"),
+    /**
+     * The maximum length of a query cached by the driver ({@code prepStmtCacheSqlLimit}).
+     */
+    DB_PREP_STMT_CACHE_SQL_LIMIT("dbPrepStmtCacheSqlLimit"),
+    /**
+     * Whether the driver sends a batch of inserts as a single multi-row insert ({@code rewriteBatchedStatements}).
+     */
+    DB_REWRITE_BATCHED_STATEMENTS("dbRewriteBatchedStatements"),
+    /**
+     * The maximum number of users whose folder tree is cached.
+     */
+    FOLDER_CACHE_MAX_SIZE("folderCacheMaxSize"),
+    /**
+     * The time in milliseconds a folder tree stays in the cache.
+     */
+    FOLDER_CACHE_TTL("folderCacheTtl"),
+    /**
+     * The number of documents shown in a page when the request does not specify it.
+     */
+    DOCUMENTS_PAGE_SIZE("documentsPageSize"),
+    /**
+     * The maximum number of documents a request can ask for in a single page.
+     */
+    DOCUMENTS_MAX_PAGE_SIZE("documentsMaxPageSize"),
+    /**
+     * The maximum number of documents moved by a single bulk move.
+     */
+    BULK_MOVE_MAX_DOCUMENTS("bulkMoveMaxDocuments"),
+    /**
+     * The number of documents inserted and committed together by an import.
+     */
+    IMPORT_BATCH_SIZE("importBatchSize"),
+    /**
+     * The maximum number of exports streaming at the same time, each holding a connection, smaller than the pool.
+     */
+    EXPORT_MAX_CONCURRENT("exportMaxConcurrent"),
+    /**
+     * The maximum time in milliseconds an export streams before it is stopped, 0 for no limit.
+     */
+    EXPORT_TIMEOUT("exportTimeout"),
+    /**
+     * The number of characters rendered before flushing them to the client when streaming a page.
+     */
+    TEMPLATE_FLUSH_SIZE("templateFlushSize"),
+    /**
+     * The time in milliseconds a parsed template stays in the cache.
+     */
+    TEMPLATE_CACHE_TTL("templateCacheTtl"),
+    /**
+     * The maximum number of parsed templates kept in the cache.
+     */
+    TEMPLATE_CACHE_MAX_SIZE("templateCacheMaxSize"),
+    /**
+     * The minimum size in bytes of a response to be compressed.
+     */
+    COMPRESSION_MIN_SIZE("compressionMinSize"),
+    /**
+     * The level, from 1 to 9, of the compression of the responses.
+     */
+    COMPRESSION_LEVEL("compressionLevel"),
+    /**
+     * The maximum number of idle deflaters kept for the next responses.
+     */
+    COMPRESSION_POOL_SIZE("compressionPoolSize"),
+    /**
+     * The time in seconds the clients cache a static asset requested with its content hash.
+     */
+    STATIC_ASSETS_MAX_AGE("staticAssetsMaxAge"),
+    /**
+     * The number of PBKDF2 iterations used to hash new passwords.
+     */
+    PASSWORD_HASH_ITERATIONS("passwordHashIterations"),
+    /**
+     * The number of threads dedicated to password hashing.
+     */
+    PASSWORD_HASH_THREADS("passwordHashThreads"),
+    /**
+     * The maximum number of passwords waiting to be hashed before new requests are rejected.
+     */
+    PASSWORD_HASH_QUEUE_SIZE("passwordHashQueueSize"),
+    /**
+     * The maximum time in milliseconds a request waits for its password to be hashed.
+     */
+    PASSWORD_HASH_TIMEOUT("passwordHashTimeout"),
+    /**
+     * The number of threads running the requests of the asynchronous controllers.
+     */
+    REQUEST_THREADS("requestThreads"),
+    /**
+     * The maximum number of requests waiting for a thread before new ones are rejected with 503.
+     */
+    REQUEST_QUEUE_SIZE("requestQueueSize"),
+    /**
+     * The time in seconds a client is asked to wait before retrying a rejected request.
+     */
+    REQUEST_RETRY_AFTER("requestRetryAfter"),
+    /**
+     * The maximum time in milliseconds a request waits for a thread before it is answered with 503, 0 for no limit.
+     */
+    REQUEST_QUEUE_TIMEOUT("requestQueueTimeout"),
+    /**
+     * Whether the requests run on virtual threads, limited only by the connection pool. It needs Java 21.
+     */
+    REQUEST_VIRTUAL_THREADS("requestVirtualThreads"),
+    /**
+     * How the logged user is remembered, {@code session}, {@code token} or {@code store}, see {@link AuthMode}.
+     */
+    AUTH_MODE("authMode"),
+    /**
+     * The secret key signing the authentication tokens, shared by all the instances of the application.
+     */
+    AUTH_TOKEN_SECRET("authTokenSecret"),
+    /**
+     * The time in seconds an authentication token stays valid.
+     */
+    AUTH_TOKEN_TTL("authTokenTtl"),
+    /**
+     * The {@link SessionStoreType} used in {@code store} authentication mode, {@code memory} or {@code jdbc}.
+     */
+    SESSION_STORE("sessionStore"),
+    /**
+     * The time in seconds after which an unused session of the store expires.
+     */
+    SESSION_TIMEOUT("sessionTimeout"),
+    /**
+     * The maximum number of sessions cached by each instance in front of the JDBC store.
+     */
+    SESSION_CACHE_SIZE("sessionCacheSize"),
+    /**
+     * The time in milliseconds a session read from the JDBC store is trusted without reading it again.
+     */
+    SESSION_CACHE_TTL("sessionCacheTtl"),
+    /**
+     * The time in milliseconds between two writes of the session expirations to the JDBC store.
+     */
+    SESSION_WRITE_BEHIND_DELAY("sessionWriteBehindDelay"),
+    /**
+     * The comma separated remote addresses allowed to read the metrics, empty to allow any.
+     */
+    METRICS_ALLOWED_ADDRESSES("metricsAllowedAddresses"),
+    /**
+     * Whether the schema migrations are applied at startup.
+     */
+    SCHEMA_MIGRATE("schemaMigrate"),
+    /**
+     * Whether the startup fails if a query of the DAOs scans a whole table that is not small, off by default
+     * since the plans are only meaningful on a database with production-like data.
+     */
+    SCHEMA_VERIFY_QUERY_PLANS("schemaVerifyQueryPlans");
 
     private final String value;
 
@@ -33,4 +228,57 @@ public enum ContextParameters {
     public String getValue() {
         return value;
     }
+
+    /**
+     * Reads the parameter from the {@link ServletContext} as a string.
+     *
+     * @param context      the {@link ServletContext} of the application.
+     * @param defaultValue the value returned if the parameter is not set.
+     * @return the value of the parameter or the default value.
+     */
+    public String getString(ServletContext context, String defaultValue) {
+        String parameter = context.getInitParameter(value);
+        return parameter == null || parameter.isBlank() ? defaultValue : parameter.trim();
+    }
+
+    /**
+     * Reads the parameter from the {@link ServletContext} as an integer.
+     *
+     * @param context      the {@link ServletContext} of the application.
+     * @param defaultValue the value returned if the parameter is not set or is not a number.
+     * @return the value of the parameter or the default value.
+     */
+    public int getInt(ServletContext context, int defaultValue) {
+        return (int) getLong(context, defaultValue);
+    }
+
+    /**
+     * Reads the parameter from the {@link ServletContext} as a long.
+     *
+     * @param context      the {@link ServletContext} of the application.
+     * @param defaultValue the value returned if the parameter is not set or is not a number.
+     * @return the value of the parameter or the default value.
+     */
+    public long getLong(ServletContext context, long defaultValue) {
+        String parameter = getString(context, null);
+        if (parameter == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(parameter);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads the parameter from the {@link ServletContext} as a boolean.
+     *
+     * @param context      the {@link ServletContext} of the application.
+     * @param defaultValue the value returned if the parameter is not set.
+     * @return the value of the parameter or the default value.
+     */
+    public boolean getBoolean(ServletContext context, boolean defaultValue) {
+        String parameter = getString(context, null);
+        return parameter == null ? defaultValue : Boolean.parseBoolean(parameter);
+    }
 }
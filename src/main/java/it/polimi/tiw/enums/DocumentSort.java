@@ -0,0 +1,78 @@
+package it.polimi.tiw.enums;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.DocumentPosition;
+
+import java.sql.Date;
+
+/**
+ * This enum contains the orders in which the documents of a subfolder can be listed.
+ */
+public enum DocumentSort {
+    /**
+     * The oldest documents first.
+     */
+    OLDEST("oldest"),
+    /**
+     * The newest documents first.
+     */
+    NEWEST("newest"),
+    /**
+     * The documents in alphabetical order.
+     */
+    NAME("name");
+
+    private final String value;
+
+    DocumentSort(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the value of the sort in the request parameters.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @param document a document of the listing.
+     * @return the {@link DocumentPosition} of the document in this order.
+     */
+    public DocumentPosition positionOf(Document document) {
+        return new DocumentPosition(this == NAME ? document.name() : document.creationDate(), document.id());
+    }
+
+    /**
+     * Parses the {@code after} parameter of a page, written by {@link DocumentPosition#getValue()}.
+     * The id follows the last comma, since a name may contain commas too.
+     *
+     * @param value the value of the parameter.
+     * @return the {@link DocumentPosition} or null if the value is not a position in this order.
+     */
+    public DocumentPosition parsePosition(String value) {
+        int comma = value.lastIndexOf(',');
+        if (comma < 0)
+            return null;
+        String key = value.substring(0, comma);
+        try {
+            int id = Integer.parseInt(value.substring(comma + 1));
+            return new DocumentPosition(this == NAME ? key : Date.valueOf(key), id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the {@link DocumentSort} corresponding to the given value or null if the value is invalid.
+     *
+     * @param value the value of the sort in the request parameters.
+     * @return the {@link DocumentSort} corresponding to the given value or null if the value is invalid.
+     */
+    public static DocumentSort fromValue(String value) {
+        for (DocumentSort sort : values())
+            if (sort.value.equals(value))
+                return sort;
+        return null;
+    }
+}
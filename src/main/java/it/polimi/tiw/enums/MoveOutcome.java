@@ -0,0 +1,32 @@
+package it.polimi.tiw.enums;
+
+/**
+ * This enum contains the outcomes of the move of a single document in a bulk move.
+ */
+public enum MoveOutcome {
+    /**
+     * The document has been moved to the destination subfolder.
+     */
+    MOVED("moved"),
+    /**
+     * The document was already in the destination subfolder.
+     */
+    UNCHANGED("already in the subfolder"),
+    /**
+     * The document does not exist or belongs to another user.
+     */
+    NOT_FOUND("not found");
+
+    private final String value;
+
+    MoveOutcome(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the description of the outcome.
+     */
+    public String getValue() {
+        return value;
+    }
+}
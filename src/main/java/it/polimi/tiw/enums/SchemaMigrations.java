@@ -0,0 +1,51 @@
+package it.polimi.tiw.enums;
+
+/**
+ * This enum contains the migrations of the database schema, in the order in which they are applied.
+ */
+public enum SchemaMigrations {
+    /**
+     * Creates the tables.
+     */
+    CREATE_SCHEMA(1, "V1__create_schema.sql"),
+    /**
+     * Creates the composite indexes matching the filters and the orders of the DAOs. They do not cover the selected
+     * columns, which are read from the rows.
+     */
+    COMPOSITE_INDEXES(2, "V2__composite_indexes.sql"),
+    /**
+     * Adds the owner to subfolders and documents and fills it for the existing rows.
+     */
+    OWNER_COLUMNS(3, "V3__owner_columns.sql"),
+    /**
+     * Creates the table of the sessions of the JDBC session store.
+     */
+    USER_SESSIONS(4, "V4__user_sessions.sql");
+
+    /**
+     * The folder of the migration scripts in the classpath.
+     */
+    public static final String LOCATION = "/db/migration/";
+
+    private final int version;
+    private final String script;
+
+    SchemaMigrations(int version, String script) {
+        this.version = version;
+        this.script = script;
+    }
+
+    /**
+     * @return the version of the schema after the migration.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the file name of the script of the migration.
+     */
+    public String getScript() {
+        return script;
+    }
+}
@@ -0,0 +1,42 @@
+package it.polimi.tiw.enums;
+
+/**
+ * This enum contains the implementations of the session store used in {@link AuthMode#STORE} mode.
+ */
+public enum SessionStoreType {
+    /**
+     * The sessions are kept in the memory of the instance.
+     */
+    MEMORY("memory"),
+    /**
+     * The sessions are kept in the database, so every instance can serve every request. The folder tree cache
+     * and the versions of the conditional GETs, which only see the changes of their instance, are then disabled.
+     */
+    JDBC("jdbc");
+
+    private final String value;
+
+    SessionStoreType(String value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the value of the type in the context parameters.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the {@link SessionStoreType} corresponding to the given value or null if the value is invalid.
+     *
+     * @param value the value of the type in the context parameters.
+     * @return the {@link SessionStoreType} corresponding to the given value or null if the value is invalid.
+     */
+    public static SessionStoreType fromValue(String value) {
+        for (SessionStoreType type : values())
+            if (type.value.equals(value))
+                return type;
+        return null;
+    }
+}
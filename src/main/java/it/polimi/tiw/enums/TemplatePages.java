@@ -14,7 +14,12 @@ public enum TemplatePages {
 
     HOME("home"),
 
-    CONTENT_MANAGEMENT("contentManagement");
+    CONTENT_MANAGEMENT("contentManagement"),
+
+    /**
+     * The results of a bulk move of documents.
+     */
+    MOVE_RESULTS("moveResults");
 
     private final String value;
 
@@ -11,7 +11,15 @@ public enum TemplateResolverParameters {
     /**
      * The suffix of the template.
      */
-    SUFFIX(".html");
+    SUFFIX(".html"),
+    /**
+     * The default time in milliseconds a parsed template stays in the cache.
+     */
+    CACHE_TTL("3600000"),
+    /**
+     * The default maximum number of parsed templates kept in the cache.
+     */
+    CACHE_MAX_SIZE("200");
 
     private final String value;
 
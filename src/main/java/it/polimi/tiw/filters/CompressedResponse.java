@@ -0,0 +1,400 @@
+package it.polimi.tiw.filters;
+
+import it.polimi.tiw.utils.DeflaterPool;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This class wraps a response compressing its body with gzip or deflate.
+ * <p>
+ * The first bytes of the body are buffered up to the minimum size: a response that ends before reaching it is sent
+ * as it is, with its length. Otherwise, the body is compressed if it is text and the servlet has not encoded it
+ * already, for example the gzip downloads of the export. Flushes of a compressed body are sync flushes, so the
+ * chunks of a streamed page still reach the client as soon as they are rendered. A servlet that switches to
+ * non-blocking writes before the body is compressed gets the stream of the wrapped response, uncompressed.
+ */
+class CompressedResponse extends HttpServletResponseWrapper {
+
+    /**
+     * Header of a gzip member without file name and modification time.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final String encoding;
+    private final DeflaterPool pool;
+    private final int minSize;
+
+    private CompressingStream stream;
+    private PrintWriter writer;
+    private long contentLength = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param response the {@link HttpServletResponse} to wrap.
+     * @param encoding the content coding, {@code gzip} or {@code deflate}.
+     * @param pool     the {@link DeflaterPool} of the content coding.
+     * @param minSize  the minimum size in bytes of a body to be compressed.
+     */
+    CompressedResponse(HttpServletResponse response, String encoding, DeflaterPool pool, int minSize) {
+        super(response);
+        this.encoding = encoding;
+        this.pool = pool;
+        this.minSize = minSize;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null)
+            throw new IllegalStateException("getWriter() has already been called");
+        if (stream == null)
+            stream = new CompressingStream();
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null)
+                throw new IllegalStateException("getOutputStream() has already been called");
+            stream = new CompressingStream();
+            String charset = getCharacterEncoding();
+            setCharacterEncoding(charset);
+            writer = new PrintWriter(new OutputStreamWriter(stream, charset));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int length) {
+        contentLength = length;
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+        contentLength = length;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name))
+            contentLength = value == null ? -1 : Long.parseLong(value);
+        else
+            super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name))
+            contentLength = Long.parseLong(value);
+        else
+            super.addHeader(name, value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if ("Content-Length".equalsIgnoreCase(name))
+            contentLength = value;
+        else
+            super.setIntHeader(name, value);
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if ("Content-Length".equalsIgnoreCase(name))
+            contentLength = value;
+        else
+            super.addIntHeader(name, value);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null)
+            writer.flush();
+        else if (stream != null)
+            stream.flush();
+        else
+            super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (stream != null)
+            stream.discard(false);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        contentLength = -1;
+        if (stream != null)
+            stream.discard(false);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        if (stream != null)
+            stream.discard(true);
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        if (stream != null)
+            stream.discard(true);
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        if (stream != null)
+            stream.discard(true);
+        super.sendRedirect(location);
+    }
+
+    /**
+     * This method completes the body, writing what is still buffered and the end of the compressed data.
+     * It must be called once the servlet has produced the whole response.
+     *
+     * @throws IOException if an error occurs while writing.
+     */
+    void finish() throws IOException {
+        if (writer != null)
+            writer.flush();
+        if (stream != null)
+            stream.close();
+        else if (contentLength >= 0)
+            super.setContentLengthLong(contentLength);
+    }
+
+    /**
+     * This method drops what is still buffered and gives back the deflater, when the servlet fails
+     * and the container is going to send an error page instead.
+     */
+    void abandon() {
+        if (stream != null)
+            stream.discard(true);
+    }
+
+    /**
+     * @return true if the body can be compressed.
+     */
+    private boolean isCompressible() {
+        int status = getStatus();
+        if (status < 200 || status == SC_NO_CONTENT || status == SC_PARTIAL_CONTENT || status == SC_NOT_MODIFIED)
+            return false;
+        if (containsHeader("Content-Encoding"))
+            return false;
+        if (contentLength >= 0 && contentLength < minSize)
+            return false;
+        String type = getContentType();
+        if (type == null)
+            return writer != null;
+        type = type.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.startsWith("application/json") || type.startsWith("application/x-ndjson")
+                || type.startsWith("application/javascript") || type.startsWith("application/xml")
+                || type.startsWith("image/svg+xml");
+    }
+
+    /**
+     * The stream that buffers the beginning of the body and then either compresses it or passes it through.
+     */
+    private final class CompressingStream extends ServletOutputStream {
+        private byte[] buffer = new byte[Math.max(minSize, 1)];
+        private int count;
+
+        /**
+         * The stream of the wrapped response, set once the body has been sent as it is or compressed.
+         */
+        private ServletOutputStream out;
+        private Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private byte[] deflated;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (closed)
+                return;
+            if (out == null) {
+                if (count + length <= buffer.length) {
+                    System.arraycopy(bytes, offset, buffer, count, length);
+                    count += length;
+                    return;
+                }
+                start(isCompressible());
+            }
+            if (deflater == null)
+                out.write(bytes, offset, length);
+            else {
+                crc.update(bytes, offset, length);
+                deflater.setInput(bytes, offset, length);
+                while (!deflater.needsInput())
+                    deflate(Deflater.NO_FLUSH);
+            }
+        }
+
+        /**
+         * Flushes the body if it has already been started. A body still shorter than the minimum size
+         * stays buffered, since it may end before reaching it.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (closed || out == null)
+                return;
+            if (deflater != null) {
+                int n;
+                do {
+                    n = deflate(Deflater.SYNC_FLUSH);
+                } while (n == deflated.length);
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            try {
+                if (out == null) {
+                    if (contentLength < 0)
+                        contentLength = count;
+                    start(false);
+                } else if (deflater != null) {
+                    deflater.finish();
+                    while (!deflater.finished())
+                        deflate(Deflater.NO_FLUSH);
+                    if (encoding.equals("gzip"))
+                        writeGzipTrailer();
+                }
+            } finally {
+                closed = true;
+                release();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return out == null || out.isReady();
+        }
+
+        /**
+         * Switches to non-blocking writes, which the deflater cannot follow: a body not started yet is sent as it is,
+         * after the bytes already buffered, and every later write goes straight to the wrapped stream.
+         *
+         * @param listener the {@link WriteListener} of the servlet.
+         * @throws IllegalStateException if the body is already being compressed.
+         */
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            if (deflater != null)
+                throw new IllegalStateException("The response is already compressed, non-blocking writes cannot start");
+            if (out == null) {
+                try {
+                    // The buffered bytes are written while the stream is still blocking.
+                    start(false);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot start the body of the response", e);
+                }
+            }
+            out.setWriteListener(listener);
+        }
+
+        /**
+         * Drops the buffered bytes when the response is reset or replaced by an error page or a redirect.
+         *
+         * @param end true if nothing else must be written to this stream.
+         */
+        private void discard(boolean end) {
+            if (out == null)
+                count = 0;
+            if (end) {
+                closed = true;
+                release();
+            }
+        }
+
+        /**
+         * Starts the body of the wrapped response and writes the buffered bytes to it.
+         * A strong ETag becomes weak when the body is compressed, since the bytes sent are no longer the same.
+         *
+         * @param compress true to compress the body.
+         * @throws IOException if an error occurs while writing.
+         */
+        private void start(boolean compress) throws IOException {
+            if (compress) {
+                CompressedResponse.super.setHeader("Content-Encoding", encoding);
+                String etag = getHeader("ETag");
+                if (etag != null && !etag.startsWith("W/"))
+                    CompressedResponse.super.setHeader("ETag", "W/" + etag);
+                deflater = pool.borrow();
+                deflated = new byte[Math.max(buffer.length, 8192)];
+            } else if (contentLength >= 0)
+                CompressedResponse.super.setContentLengthLong(contentLength);
+            out = CompressedResponse.super.getOutputStream();
+            if (compress && encoding.equals("gzip"))
+                out.write(GZIP_HEADER);
+            byte[] buffered = buffer;
+            int length = count;
+            buffer = null;
+            count = 0;
+            if (length > 0)
+                write(buffered, 0, length);
+        }
+
+        /**
+         * Writes to the wrapped response the data produced by the deflater.
+         *
+         * @param flush the flush mode of the deflater.
+         * @return the number of bytes written.
+         * @throws IOException if an error occurs while writing.
+         */
+        private int deflate(int flush) throws IOException {
+            int n = deflater.deflate(deflated, 0, deflated.length, flush);
+            if (n > 0)
+                out.write(deflated, 0, n);
+            return n;
+        }
+
+        /**
+         * Writes the checksum and the size of the uncompressed body, in little-endian order.
+         *
+         * @throws IOException if an error occurs while writing.
+         */
+        private void writeGzipTrailer() throws IOException {
+            long value = crc.getValue();
+            long size = deflater.getBytesRead();
+            byte[] trailer = new byte[8];
+            for (int i = 0; i < 4; i++) {
+                trailer[i] = (byte) (value >> (8 * i));
+                trailer[i + 4] = (byte) (size >> (8 * i));
+            }
+            out.write(trailer);
+        }
+
+        /**
+         * Gives back the deflater, if any.
+         */
+        private void release() {
+            if (deflater != null) {
+                pool.giveBack(deflater);
+                deflater = null;
+            }
+        }
+    }
+}
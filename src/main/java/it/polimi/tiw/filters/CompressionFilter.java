@@ -0,0 +1,135 @@
+package it.polimi.tiw.filters;
+
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.utils.AsyncCompletion;
+import it.polimi.tiw.utils.DeflaterPool;
+import it.polimi.tiw.utils.MetricsRegistry;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Servlet Filter compresses the text responses with gzip or deflate, as accepted by the client.
+ * The {@link Deflater}s are taken from a {@link DeflaterPool} for each content coding.
+ */
+public class CompressionFilter implements Filter {
+
+    private int minSize;
+    private DeflaterPool gzipPool;
+    private DeflaterPool deflatePool;
+
+    /**
+     * Creates the {@link DeflaterPool}s from the parameters of the {@link ServletContext} and registers their metrics.
+     *
+     * @see Filter#init(FilterConfig)
+     */
+    @Override
+    public void init(FilterConfig filterConfig) {
+        ServletContext context = filterConfig.getServletContext();
+        minSize = ContextParameters.COMPRESSION_MIN_SIZE.getInt(context, 1024);
+        int level = ContextParameters.COMPRESSION_LEVEL.getInt(context, 6);
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+            level = Deflater.DEFAULT_COMPRESSION;
+        int poolSize = ContextParameters.COMPRESSION_POOL_SIZE.getInt(context, 32);
+        gzipPool = new DeflaterPool(level, true, poolSize);
+        deflatePool = new DeflaterPool(level, false, poolSize);
+
+        MetricsRegistry registry = MetricsRegistry.getInstance(context);
+        if (registry != null) {
+            registry.register("compression_deflaters_created_total", MetricsRegistry.Type.COUNTER,
+                    "Deflaters created because none was idle, by content coding.", samples -> {
+                        samples.sample(gzipPool.getCreated(), "encoding", "gzip");
+                        samples.sample(deflatePool.getCreated(), "encoding", "deflate");
+                    });
+            registry.register("compression_deflaters_reused_total", MetricsRegistry.Type.COUNTER,
+                    "Deflaters taken from the pool, by content coding.", samples -> {
+                        samples.sample(gzipPool.getReused(), "encoding", "gzip");
+                        samples.sample(deflatePool.getReused(), "encoding", "deflate");
+                    });
+        }
+    }
+
+    /**
+     * Wraps the response in a {@link CompressedResponse} if the client accepts a compressed body.
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        String encoding = httpRequest.getMethod().equals("HEAD") || httpRequest.getHeader("Range") != null
+                ? null : negotiate(httpRequest.getHeader("Accept-Encoding"));
+        httpResponse.addHeader("Vary", "Accept-Encoding");
+        if (encoding == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        CompressedResponse compressed = new CompressedResponse(httpResponse, encoding,
+                encoding.equals("gzip") ? gzipPool : deflatePool, minSize);
+        // An asynchronous servlet writes its response after the chain returns, the body is finished on completion.
+        AsyncCompletion.register(request, compressed::finish);
+        try {
+            chain.doFilter(request, compressed);
+        } catch (IOException | ServletException | RuntimeException e) {
+            compressed.abandon();
+            throw e;
+        }
+        if (!request.isAsyncStarted())
+            compressed.finish();
+    }
+
+    /**
+     * Ends the idle {@link Deflater}s.
+     *
+     * @see Filter#destroy()
+     */
+    @Override
+    public void destroy() {
+        gzipPool.close();
+        deflatePool.close();
+    }
+
+    /**
+     * Chooses the content coding of the response, preferring gzip over deflate.
+     *
+     * @param acceptEncoding the {@code Accept-Encoding} header of the request.
+     * @return {@code gzip}, {@code deflate} or null if the client accepts neither.
+     */
+    private static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null)
+            return null;
+        boolean gzipRefused = false;
+        boolean deflate = false;
+        boolean any = false;
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            switch (coding) {
+                case "gzip", "x-gzip" -> {
+                    if (accepted)
+                        return "gzip";
+                    gzipRefused = true;
+                }
+                case "deflate" -> deflate = accepted;
+                case "*" -> any = accepted;
+                default -> {
+                }
+            }
+        }
+        return any && !gzipRefused ? "gzip" : deflate ? "deflate" : null;
+    }
+}
@@ -1,16 +1,16 @@
 package it.polimi.tiw.filters;
 
+import it.polimi.tiw.utils.UserSessions;
+
 import javax.servlet.*;
-import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
 /**
- * Servlet Filter checks if the user is logged in.
+ * Servlet Filter checks if the user is logged in. Pages redirect to the login, the API answers 401.
+ * The check never creates a session, so unauthenticated requests leave no state on the server.
  */
-@WebFilter({"/home", "/documents", "/document", "/move-document", "/create-folder", "/create-subfolder", "/create-document"})
 public class LoggedInChecker implements Filter {
 
     /**
@@ -26,9 +26,11 @@ public class LoggedInChecker implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
-        HttpSession session = httpRequest.getSession();
-        if (session.isNew() || session.getAttribute("user") == null) {
-            ((HttpServletResponse) response).sendRedirect(((HttpServletRequest) request).getContextPath() + "/login");
+        if (UserSessions.getInstance(request.getServletContext()).getUser(httpRequest) == null) {
+            if (httpRequest.getServletPath().startsWith("/api/"))
+                ((HttpServletResponse) response).sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            else
+                ((HttpServletResponse) response).sendRedirect(((HttpServletRequest) request).getContextPath() + "/login");
         } else {
             chain.doFilter(request, response);
         }
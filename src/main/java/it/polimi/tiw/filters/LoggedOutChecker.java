@@ -1,16 +1,15 @@
 package it.polimi.tiw.filters;
 
+import it.polimi.tiw.utils.UserSessions;
+
 import javax.servlet.*;
-import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
 /**
  * Servlet Filter checks if the user is logged out.
  */
-@WebFilter({"/login", "/register"})
 public class LoggedOutChecker implements Filter {
     /**
      * @see Filter#doFilter(ServletRequest, ServletResponse, FilterChain)
@@ -26,8 +25,7 @@ public class LoggedOutChecker implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
-        HttpSession session = httpRequest.getSession();
-        if (!session.isNew() && session.getAttribute("user") != null) {
+        if (UserSessions.getInstance(request.getServletContext()).getUser(httpRequest) != null) {
             ((HttpServletResponse) response).sendRedirect(((HttpServletRequest) request).getContextPath() + "/home");
         } else {
             chain.doFilter(request, response);
@@ -0,0 +1,89 @@
+package it.polimi.tiw.filters;
+
+import it.polimi.tiw.utils.MetricsRegistry;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletMapping;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Servlet Filter times every request and records it in the {@link MetricsRegistry}, by servlet, method and status.
+ * A request processed asynchronously is recorded when its {@link AsyncContext} completes, not when the container
+ * thread returns.
+ */
+public class MetricsFilter implements Filter {
+
+    private MetricsRegistry registry;
+
+    /**
+     * @see Filter#init(FilterConfig)
+     */
+    @Override
+    public void init(FilterConfig filterConfig) {
+        registry = MetricsRegistry.getInstance(filterConfig.getServletContext());
+    }
+
+    /**
+     * Times the request, until the end of the chain or the completion of its {@link AsyncContext}.
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (registry == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            record(httpRequest, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, start);
+            throw e;
+        }
+        if (!request.isAsyncStarted()) {
+            record(httpRequest, httpResponse.getStatus(), start);
+            return;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                record(httpRequest, httpResponse.getStatus(), start);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    /**
+     * @see Filter#destroy()
+     */
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * Records a request in the {@link MetricsRegistry}.
+     *
+     * @param request the request.
+     * @param status  the status of the response.
+     * @param start   the value of {@link System#nanoTime()} when the request started.
+     */
+    private void record(HttpServletRequest request, int status, long start) {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        String servlet = mapping != null && mapping.getServletName() != null ? mapping.getServletName() : "unknown";
+        registry.recordRequest(servlet, request.getMethod(), status, System.nanoTime() - start);
+    }
+}
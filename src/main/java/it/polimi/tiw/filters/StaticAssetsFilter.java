@@ -0,0 +1,69 @@
+package it.polimi.tiw.filters;
+
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.utils.StaticAssets;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+
+/**
+ * Servlet Filter versions the static assets with their content hash.
+ * <p>
+ * The URLs of the assets encoded by the pages, as the links of the layout, get the hash as a query parameter.
+ * An asset requested with its current hash never changes, so it is cached by the client without revalidation.
+ */
+public class StaticAssetsFilter implements Filter {
+
+    private StaticAssets assets;
+    private String immutableCacheControl;
+
+    /**
+     * Hashes the static assets of the application.
+     *
+     * @see Filter#init(FilterConfig)
+     */
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        ServletContext context = filterConfig.getServletContext();
+        try {
+            assets = StaticAssets.scan(context);
+        } catch (IOException e) {
+            throw new UnavailableException("Cannot read the static assets: " + e.getMessage());
+        }
+        immutableCacheControl = "public, max-age=" + ContextParameters.STATIC_ASSETS_MAX_AGE.getLong(context, 31_536_000)
+                + ", immutable";
+    }
+
+    /**
+     * Sets the caching headers of an asset, or versions the URLs of the assets encoded by a page.
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        String contextPath = httpRequest.getContextPath();
+        String hash = assets.getHash(httpRequest.getRequestURI().substring(contextPath.length()));
+        if (hash != null) {
+            boolean current = hash.equals(httpRequest.getParameter(StaticAssets.VERSION_PARAMETER));
+            httpResponse.setHeader("Cache-Control", current ? immutableCacheControl : "no-cache");
+            chain.doFilter(request, response);
+            return;
+        }
+        chain.doFilter(request, new HttpServletResponseWrapper(httpResponse) {
+            @Override
+            public String encodeURL(String url) {
+                return super.encodeURL(assets.versioned(contextPath, url));
+            }
+        });
+    }
+
+    /**
+     * @see Filter#destroy()
+     */
+    @Override
+    public void destroy() {
+    }
+}
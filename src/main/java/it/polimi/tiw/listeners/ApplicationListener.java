@@ -0,0 +1,162 @@
+package it.polimi.tiw.listeners;
+
+import it.polimi.tiw.dao.QueryPlanVerifier;
+import it.polimi.tiw.enums.ContextAttributes;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.utils.CachedSessionStore;
+import it.polimi.tiw.utils.ConnectionHandler;
+import it.polimi.tiw.utils.ConnectionPool;
+import it.polimi.tiw.utils.ContentVersions;
+import it.polimi.tiw.utils.FolderTreeCache;
+import it.polimi.tiw.utils.MetricsRegistry;
+import it.polimi.tiw.utils.PasswordHasher;
+import it.polimi.tiw.utils.RequestExecutor;
+import it.polimi.tiw.utils.SchemaMigrator;
+import it.polimi.tiw.utils.TemplateHandler;
+import it.polimi.tiw.utils.UserSessions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.UnavailableException;
+import javax.servlet.annotation.WebListener;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This class creates the resources shared by all the servlets when the application starts
+ * and releases them when it stops.
+ */
+@WebListener
+public class ApplicationListener implements ServletContextListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApplicationListener.class);
+
+    /**
+     * Creates the {@link ConnectionPool}, migrates and verifies the schema and creates the {@link UserSessions},
+     * the {@link FolderTreeCache}, the {@link ContentVersions}, the template engine, the {@link PasswordHasher},
+     * the {@link RequestExecutor} and the {@link MetricsRegistry} of the application. The cache and the versions
+     * are disabled when the users can be served by any instance.
+     *
+     * @param sce the {@link ServletContextEvent} of the application.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ServletContext context = sce.getServletContext();
+        try {
+            context.setAttribute(ContextAttributes.CONNECTION_POOL.getValue(), ConnectionHandler.createConnectionPool(context));
+        } catch (UnavailableException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        prepareSchema(context);
+        UserSessions userSessions = UserSessions.create(context);
+        context.setAttribute(ContextAttributes.USER_SESSIONS.getValue(), userSessions);
+        // The trees and the versions only see the changes made through this instance.
+        boolean shared = userSessions.isShared();
+        if (shared)
+            logger.info("The users can be served by any instance, the folder tree cache and the conditional GETs are disabled");
+        context.setAttribute(ContextAttributes.FOLDER_TREE_CACHE.getValue(),
+                shared ? new FolderTreeCache(0, 0) : FolderTreeCache.create(context));
+        context.setAttribute(ContextAttributes.CONTENT_VERSIONS.getValue(), new ContentVersions(!shared));
+        context.setAttribute(ContextAttributes.TEMPLATE_ENGINE.getValue(), TemplateHandler.createTemplateEngine(context));
+        context.setAttribute(ContextAttributes.PASSWORD_HASHER.getValue(), PasswordHasher.create(context));
+        context.setAttribute(ContextAttributes.REQUEST_EXECUTOR.getValue(), RequestExecutor.create(context));
+        context.setAttribute(ContextAttributes.METRICS_REGISTRY.getValue(), createMetricsRegistry(context));
+    }
+
+    /**
+     * Stops the {@link RequestExecutor}, closes the {@link UserSessions}, which may still write to the database,
+     * the {@link ConnectionPool} and stops the {@link PasswordHasher} of the application.
+     *
+     * @param sce the {@link ServletContextEvent} of the application.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ServletContext context = sce.getServletContext();
+        RequestExecutor requestExecutor = RequestExecutor.getInstance(context);
+        if (requestExecutor != null)
+            requestExecutor.close();
+        UserSessions userSessions = UserSessions.getInstance(context);
+        if (userSessions != null)
+            userSessions.close();
+        ConnectionPool pool = ConnectionHandler.getConnectionPool(context);
+        if (pool != null)
+            pool.close();
+        PasswordHasher passwordHasher = PasswordHasher.getInstance(context);
+        if (passwordHasher != null)
+            passwordHasher.close();
+        context.removeAttribute(ContextAttributes.CONNECTION_POOL.getValue());
+        context.removeAttribute(ContextAttributes.FOLDER_TREE_CACHE.getValue());
+        context.removeAttribute(ContextAttributes.CONTENT_VERSIONS.getValue());
+        context.removeAttribute(ContextAttributes.TEMPLATE_ENGINE.getValue());
+        context.removeAttribute(ContextAttributes.PASSWORD_HASHER.getValue());
+        context.removeAttribute(ContextAttributes.USER_SESSIONS.getValue());
+        context.removeAttribute(ContextAttributes.REQUEST_EXECUTOR.getValue());
+        context.removeAttribute(ContextAttributes.METRICS_REGISTRY.getValue());
+    }
+
+    /**
+     * Creates the {@link MetricsRegistry} with the gauges of the shared resources of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link MetricsRegistry}.
+     */
+    private static MetricsRegistry createMetricsRegistry(ServletContext context) {
+        MetricsRegistry registry = new MetricsRegistry();
+        ConnectionPool pool = ConnectionHandler.getConnectionPool(context);
+        registry.gauge("db_pool_connections_active", "Connections lent to a request.", pool::getActiveConnections);
+        registry.gauge("db_pool_connections_idle", "Connections waiting in the pool.", pool::getIdleConnections);
+        registry.gauge("db_pool_connections_max", "Maximum number of connections of the pool.", pool::getMaxSize);
+        registry.registerStatements(pool.getStatementMetrics());
+
+        FolderTreeCache folderTreeCache = FolderTreeCache.getInstance(context);
+        registry.gauge("folder_tree_cache_size", "Trees in the folder tree cache.", folderTreeCache::size);
+        registry.counter("folder_tree_cache_hits_total", "Trees read from the cache.", folderTreeCache::getHits);
+        registry.counter("folder_tree_cache_misses_total", "Trees loaded from the database.", folderTreeCache::getMisses);
+        registry.counter("folder_tree_cache_evictions_total", "Trees removed from the cache.", folderTreeCache::getEvictions);
+
+        RequestExecutor requestExecutor = RequestExecutor.getInstance(context);
+        registry.gauge("request_executor_active", "Requests running on the request executor.", requestExecutor::getActive);
+        registry.gauge("request_executor_queued", "Requests waiting for a thread of the request executor.", requestExecutor::getQueued);
+        registry.counter("request_executor_rejected_total", "Requests rejected with 503 by the request executor.",
+                requestExecutor::getRejected);
+
+        if (UserSessions.getInstance(context).getStore() instanceof CachedSessionStore sessionStore) {
+            registry.counter("session_cache_hits_total", "Sessions read from the cache.", sessionStore::getHits);
+            registry.counter("session_cache_misses_total", "Sessions read from the store.", sessionStore::getMisses);
+        }
+
+        registry.counter("template_cache_hits_total", "Templates read from the template cache.",
+                () -> TemplateHandler.getTemplateCacheHits(context));
+        registry.counter("template_cache_misses_total", "Templates parsed by the template engine.",
+                () -> TemplateHandler.getTemplateCacheMisses(context));
+        return registry;
+    }
+
+    /**
+     * Applies the schema migrations and checks the query plans of the DAOs, as configured in the {@link ServletContext}.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @throws IllegalStateException if a migration fails or a query scans a whole table.
+     */
+    private static void prepareSchema(ServletContext context) {
+        boolean migrate = ContextParameters.SCHEMA_MIGRATE.getBoolean(context, true);
+        boolean verify = ContextParameters.SCHEMA_VERIFY_QUERY_PLANS.getBoolean(context, false);
+        if (!migrate && !verify)
+            return;
+        try (Connection connection = ConnectionHandler.getConnection(context)) {
+            if (migrate)
+                SchemaMigrator.migrate(connection);
+            if (verify) {
+                List<String> problems = QueryPlanVerifier.verify(connection);
+                if (!problems.isEmpty())
+                    throw new IllegalStateException("Queries without a suitable index:\n" + String.join("\n", problems));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot prepare the database schema", e);
+        }
+    }
+}
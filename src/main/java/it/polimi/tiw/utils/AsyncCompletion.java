@@ -0,0 +1,62 @@
+package it.polimi.tiw.utils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletRequest;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class lets the filters finish their work on a response that is completed asynchronously.
+ * <p>
+ * A filter returns from {@code chain.doFilter} as soon as the servlet has started the asynchronous processing,
+ * before the response is written, so what it would do afterwards is registered here instead and run by
+ * {@link #complete} just before the {@link AsyncContext} is completed, innermost filter first.
+ */
+public abstract class AsyncCompletion {
+
+    private static final String ATTRIBUTE = AsyncCompletion.class.getName();
+
+    /**
+     * The work of a filter on a completed response.
+     */
+    @FunctionalInterface
+    public interface Hook {
+        void run() throws IOException;
+    }
+
+    /**
+     * This method registers the work to do when the response of an asynchronous request is complete.
+     *
+     * @param request the request.
+     * @param hook    the {@link Hook} to run.
+     */
+    @SuppressWarnings("unchecked")
+    public static void register(ServletRequest request, Hook hook) {
+        List<Hook> hooks = (List<Hook>) request.getAttribute(ATTRIBUTE);
+        if (hooks == null) {
+            hooks = new ArrayList<>(2);
+            request.setAttribute(ATTRIBUTE, hooks);
+        }
+        hooks.add(hook);
+    }
+
+    /**
+     * This method runs the registered hooks, in reverse order, and completes the {@link AsyncContext}.
+     * The context is completed even if a hook fails.
+     *
+     * @param asyncContext the {@link AsyncContext} of the request.
+     * @throws IOException if a hook fails.
+     */
+    @SuppressWarnings("unchecked")
+    public static void complete(AsyncContext asyncContext) throws IOException {
+        try {
+            List<Hook> hooks = (List<Hook>) asyncContext.getRequest().getAttribute(ATTRIBUTE);
+            if (hooks != null)
+                for (int i = hooks.size() - 1; i >= 0; i--)
+                    hooks.get(i).run();
+        } finally {
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.beans.StoredSession;
+import it.polimi.tiw.beans.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is a {@link SessionStore} that caches the sessions of another store in the memory of the instance.
+ * <p>
+ * A cached session is trusted for a short time before being read again, so a logout on another instance is seen
+ * after at most that time. Creations and deletions are written through immediately, while the extensions of the
+ * expirations, which happen on most requests, are collected and written behind in a single batch.
+ */
+public class CachedSessionStore implements SessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachedSessionStore.class);
+
+    /**
+     * A cached session with the time it was read.
+     *
+     * @param session  the {@link StoredSession}.
+     * @param cachedAt the time in milliseconds the session was read from the store.
+     */
+    private record Entry(StoredSession session, long cachedAt) {
+    }
+
+    private final SessionStore delegate;
+    private final int maxSize;
+    private final long timeToLive;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Extensions not yet written to the delegate, by id.
+     */
+    private final ConcurrentHashMap<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService writer;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param delegate         the {@link SessionStore} holding the sessions.
+     * @param maxSize          the maximum number of cached sessions.
+     * @param timeToLive       the time in milliseconds a cached session is trusted.
+     * @param writeBehindDelay the time in milliseconds between two writes of the pending extensions.
+     */
+    public CachedSessionStore(SessionStore delegate, int maxSize, long timeToLive, long writeBehindDelay) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CachedSessionStore.this.maxSize;
+            }
+        };
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-store-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, writeBehindDelay, writeBehindDelay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public StoredSession get(String id, long now) throws SQLException {
+        lock.lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null && System.currentTimeMillis() - entry.cachedAt() < timeToLive) {
+                hits.increment();
+                return entry.session().expiresAt() > now ? entry.session() : null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        StoredSession session = delegate.get(id, now);
+        lock.lock();
+        try {
+            if (session == null)
+                entries.remove(id);
+            else {
+                Long extension = pending.get(id);
+                if (extension != null && extension > session.expiresAt())
+                    session = new StoredSession(session.user(), extension);
+                if (maxSize > 0)
+                    entries.put(id, new Entry(session, System.currentTimeMillis()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return session;
+    }
+
+    @Override
+    public void create(String id, User user, long expiresAt) throws SQLException {
+        delegate.create(id, user, expiresAt);
+        lock.lock();
+        try {
+            if (maxSize > 0)
+                entries.put(id, new Entry(new StoredSession(user, expiresAt), System.currentTimeMillis()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void extend(String id, long expiresAt) {
+        pending.merge(id, expiresAt, Math::max);
+        lock.lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.session().expiresAt() < expiresAt)
+                entries.put(id, new Entry(new StoredSession(entry.session().user(), expiresAt), entry.cachedAt()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String id) throws SQLException {
+        pending.remove(id);
+        lock.lock();
+        try {
+            entries.remove(id);
+        } finally {
+            lock.unlock();
+        }
+        delegate.delete(id);
+    }
+
+    @Override
+    public void purgeExpired(long now) throws SQLException {
+        flush();
+        delegate.purgeExpired(now);
+        lock.lock();
+        try {
+            entries.values().removeIf(entry -> entry.session().expiresAt() <= now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method writes the pending extensions to the delegate. The ones that cannot be written are kept
+     * for the next attempt.
+     *
+     * @throws SQLException if the delegate cannot be written.
+     */
+    public void flush() throws SQLException {
+        if (pending.isEmpty())
+            return;
+        Map<String, Long> batch = new HashMap<>();
+        for (String id : pending.keySet()) {
+            Long expiresAt = pending.remove(id);
+            if (expiresAt != null)
+                batch.put(id, expiresAt);
+        }
+        try {
+            delegate.extend(batch);
+        } catch (SQLException | RuntimeException e) {
+            for (Map.Entry<String, Long> expiration : batch.entrySet())
+                pending.merge(expiration.getKey(), expiration.getValue(), Math::max);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of reads answered by the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of reads that had to query the delegate.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Stops the writer, writes the pending extensions and closes the delegate.
+     */
+    @Override
+    public void close() {
+        writer.shutdownNow();
+        flushQuietly();
+        delegate.close();
+    }
+
+    /**
+     * Writes the pending extensions, logging the failure instead of throwing it.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Cannot write the session expirations, retrying later", e);
+        }
+    }
+}
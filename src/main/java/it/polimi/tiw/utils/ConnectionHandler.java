@@ -1,12 +1,13 @@
 package it.polimi.tiw.utils;
 
+import it.polimi.tiw.enums.ContextAttributes;
 import it.polimi.tiw.enums.ContextParameters;
 
 import javax.servlet.ServletContext;
 import javax.servlet.UnavailableException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 /**
  * This class is the handler for the connection to the database.
@@ -14,25 +15,62 @@ import java.sql.SQLException;
 public abstract class ConnectionHandler {
 
     /**
-     * This method returns the {@link Connection} to the database.
+     * This method creates the {@link ConnectionPool} of the application from the parameters of the {@link ServletContext}.
      *
-     * @param context the {@link ServletContext} of the {@link javax.servlet.Servlet}.
-     * @return the {@link Connection} to the database.
-     * @throws UnavailableException if the {@link Connection} to the database cannot be initialized.
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link ConnectionPool}.
+     * @throws UnavailableException if the database driver cannot be loaded.
      */
-    public static Connection getConnection(ServletContext context) throws UnavailableException {
+    public static ConnectionPool createConnectionPool(ServletContext context) throws UnavailableException {
         try {
-            String dbDriver = context.getInitParameter(ContextParameters.DB_DRIVER.getValue());
-            String dbUrl = context.getInitParameter(ContextParameters.DB_URL.getValue());
-            String dbUser = context.getInitParameter(ContextParameters.DB_USER.getValue());
-            String dbPassword = context.getInitParameter(ContextParameters.DB_PASSWORD.getValue());
-            Class.forName(dbDriver);
-            return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+            Class.forName(context.getInitParameter(ContextParameters.DB_DRIVER.getValue()));
         } catch (ClassNotFoundException e) {
             throw new UnavailableException("Can't load database driver");
-        } catch (SQLException e) {
-            throw new UnavailableException("Can't connect to database");
         }
+        String dbUrl = context.getInitParameter(ContextParameters.DB_URL.getValue());
+        Properties properties = new Properties();
+        properties.setProperty("user", context.getInitParameter(ContextParameters.DB_USER.getValue()));
+        properties.setProperty("password", context.getInitParameter(ContextParameters.DB_PASSWORD.getValue()));
+        properties.setProperty("cachePrepStmts", String.valueOf(ContextParameters.DB_CACHE_PREP_STMTS.getBoolean(context, true)));
+        properties.setProperty("useServerPrepStmts", String.valueOf(ContextParameters.DB_USE_SERVER_PREP_STMTS.getBoolean(context, true)));
+        properties.setProperty("prepStmtCacheSize", String.valueOf(ContextParameters.DB_PREP_STMT_CACHE_SIZE.getInt(context, 250)));
+        properties.setProperty("prepStmtCacheSqlLimit", String.valueOf(ContextParameters.DB_PREP_STMT_CACHE_SQL_LIMIT.getInt(context, 2048)));
+        properties.setProperty("rewriteBatchedStatements", String.valueOf(ContextParameters.DB_REWRITE_BATCHED_STATEMENTS.getBoolean(context, true)));
+        int maxSize = ContextParameters.DB_POOL_MAX_SIZE.getInt(context, 10);
+        return new ConnectionPool(dbUrl, properties,
+                Math.min(ContextParameters.DB_POOL_MIN_SIZE.getInt(context, 2), maxSize),
+                maxSize,
+                ContextParameters.DB_POOL_ACQUIRE_TIMEOUT.getLong(context, 5_000),
+                ContextParameters.DB_POOL_IDLE_TIMEOUT.getLong(context, 600_000),
+                ContextParameters.DB_POOL_VALIDATION_TIMEOUT.getInt(context, 2),
+                ContextParameters.DB_POOL_LEAK_DETECTION_THRESHOLD.getLong(context, 60_000),
+                ContextParameters.DB_STATEMENT_CACHE_SIZE.getInt(context, 64),
+                ContextParameters.DB_QUERY_TIMEOUT.getInt(context, 30));
+    }
+
+    /**
+     * This method returns the {@link ConnectionPool} of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link ConnectionPool}.
+     */
+    public static ConnectionPool getConnectionPool(ServletContext context) {
+        return (ConnectionPool) context.getAttribute(ContextAttributes.CONNECTION_POOL.getValue());
+    }
+
+    /**
+     * This method borrows a {@link Connection} to the database from the {@link ConnectionPool}.
+     * The {@link Connection} must be closed at the end of the request to return it to the pool.
+     *
+     * @param context the {@link ServletContext} of the {@link javax.servlet.Servlet}.
+     * @return the {@link Connection} to the database.
+     * @throws SQLException if no {@link Connection} to the database is available.
+     */
+    public static Connection getConnection(ServletContext context) throws SQLException {
+        ConnectionPool pool = getConnectionPool(context);
+        if (pool == null)
+            throw new SQLException("The connection pool is not initialized");
+        return pool.getConnection();
     }
 
     /**
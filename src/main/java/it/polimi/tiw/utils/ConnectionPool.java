@@ -0,0 +1,408 @@
+package it.polimi.tiw.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is a bounded pool of {@link Connection}s to the database shared by the whole application.
+ * <p>
+ * Each request borrows a lease with {@link #getConnection()} and returns it by closing it.
+ * Idle connections are validated before being lent again and the ones above the minimum size are evicted
+ * after the idle timeout. Leases kept longer than the leak detection threshold are reported in the log.
+ * Each physical connection keeps its {@link PreparedStatement}s in a {@link StatementCache}, so the fixed queries
+ * of the DAOs are prepared once per connection instead of once per request, and every statement is measured by
+ * a {@link MeteredStatement}. Every statement is given the query timeout of the pool, so that a slow query cannot
+ * keep a request and its connection busy without limit.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /**
+     * Idle connections used more recently than this are lent without validation.
+     */
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    /**
+     * Interval between two runs of the housekeeping task.
+     */
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+
+    private final String url;
+    private final Properties properties;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeout;
+    private final long idleTimeout;
+    private final int validationTimeout;
+    private final long leakDetectionThreshold;
+    private final int statementCacheSize;
+    private final int queryTimeout;
+    private final StatementMetrics statementMetrics = new StatementMetrics();
+
+    /**
+     * Permits limiting the connections lent at the same time.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Idle connections, the most recently used first.
+     */
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Leases currently lent.
+     */
+    private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of physical connections currently open.
+     */
+    private final AtomicInteger open = new AtomicInteger();
+
+    private final ScheduledExecutorService housekeeper;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param url                    the url of the database.
+     * @param properties             the properties of the driver, including the user and the password.
+     * @param minSize                the number of connections kept open even when idle.
+     * @param maxSize                the maximum number of connections.
+     * @param acquireTimeout         the maximum time in milliseconds to wait for a connection.
+     * @param idleTimeout            the time in milliseconds after which an idle connection above the minimum is closed.
+     * @param validationTimeout      the time in seconds allowed to validate a connection.
+     * @param leakDetectionThreshold the time in milliseconds after which a lease is reported as leaked, 0 to disable.
+     * @param statementCacheSize     the number of prepared statements cached by each connection, 0 to disable.
+     * @param queryTimeout           the time in seconds after which a statement is cancelled, 0 for no limit.
+     */
+    public ConnectionPool(String url, Properties properties, int minSize, int maxSize, long acquireTimeout,
+                          long idleTimeout, int validationTimeout, long leakDetectionThreshold, int statementCacheSize,
+                          int queryTimeout) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize)
+            throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+        this.url = url;
+        this.properties = properties;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeout = acquireTimeout;
+        this.idleTimeout = idleTimeout;
+        this.validationTimeout = validationTimeout;
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        this.statementCacheSize = statementCacheSize;
+        this.queryTimeout = Math.max(0, queryTimeout);
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fillToMinimum();
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This method borrows a {@link Connection} from the pool.
+     * The returned {@link Connection} must be closed to give it back.
+     *
+     * @return a lease on a pooled {@link Connection}.
+     * @throws SQLException if no connection is available within the acquire timeout or if it cannot be opened.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed)
+            throw new SQLException("The connection pool is closed");
+        try {
+            if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS))
+                throw new SQLTransientConnectionException("No connection available within " + acquireTimeout + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection");
+        }
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null)
+                pooled = open();
+            Lease lease = new Lease(pooled);
+            leased.add(lease);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of physical connections currently open.
+     */
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    /**
+     * @return the number of connections currently lent.
+     */
+    public int getActiveConnections() {
+        return leased.size();
+    }
+
+    /**
+     * @return the number of connections currently idle.
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * @return the maximum number of connections of the pool.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the {@link StatementMetrics} of the statements prepared and executed by the connections of the pool.
+     */
+    public StatementMetrics getStatementMetrics() {
+        return statementMetrics;
+    }
+
+    /**
+     * Closes all the connections of the pool. Leases still lent are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null)
+            discard(pooled);
+    }
+
+    /**
+     * Takes a valid idle connection, discarding the broken ones.
+     *
+     * @return an idle connection or null if there is none.
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_BYPASS_MILLIS || isValid(pooled))
+                return pooled;
+            discard(pooled);
+        }
+        return null;
+    }
+
+    /**
+     * Opens a new physical connection.
+     *
+     * @return the new connection.
+     * @throws SQLException if the connection cannot be opened.
+     */
+    private PooledConnection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, properties);
+        open.incrementAndGet();
+        return new PooledConnection(connection,
+                statementCacheSize > 0 ? new StatementCache(connection, statementCacheSize, statementMetrics) : null);
+    }
+
+    /**
+     * Gives back a connection after its lease has been closed.
+     *
+     * @param lease the closed lease.
+     */
+    private void giveBack(Lease lease) {
+        leased.remove(lease);
+        PooledConnection pooled = lease.pooled;
+        if (pooled.statements != null)
+            pooled.statements.releaseAll();
+        try {
+            if (closed || pooled.connection.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            logger.warn("Discarding a connection that could not be reset", e);
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Checks if a connection is still usable.
+     *
+     * @param pooled the connection to check.
+     * @return true if the connection is valid, false otherwise.
+     */
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a physical connection.
+     *
+     * @param pooled the connection to close.
+     */
+    private void discard(PooledConnection pooled) {
+        open.decrementAndGet();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            logger.debug("Cannot close a discarded connection", e);
+        }
+    }
+
+    /**
+     * Opens connections until the minimum size is reached.
+     */
+    private void fillToMinimum() {
+        while (!closed && open.get() < minSize) {
+            try {
+                PooledConnection pooled = open();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                logger.error("Cannot open the minimum number of connections to the database", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Evicts idle connections, restores the minimum size and reports leaked leases.
+     */
+    private void houseKeep() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && open.get() > minSize) {
+            PooledConnection pooled = iterator.next();
+            if (now - pooled.lastUsed > idleTimeout && idle.removeFirstOccurrence(pooled))
+                discard(pooled);
+        }
+        fillToMinimum();
+        if (leakDetectionThreshold > 0) {
+            for (Lease lease : leased) {
+                if (!lease.reported && now - lease.borrowedAt > leakDetectionThreshold) {
+                    lease.reported = true;
+                    logger.warn("Connection held for more than " + leakDetectionThreshold + " ms, possible leak", lease.origin);
+                }
+            }
+        }
+    }
+
+    /**
+     * A physical connection kept by the pool.
+     */
+    private static final class PooledConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * A loan of a {@link PooledConnection} to a single request.
+     * Closing the proxy returns the connection to the pool instead of closing it.
+     * Statements prepared with only their query are taken from the {@link StatementCache} of the connection
+     * and all of them get the query timeout of the pool.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection proxy;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Throwable origin;
+        private final AtomicInteger state = new AtomicInteger();
+        private volatile boolean reported;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.origin = leakDetectionThreshold > 0 ? new Throwable("Connection borrowed here") : null;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (state.compareAndSet(0, 1))
+                        giveBack(this);
+                    return null;
+                case "isClosed":
+                    return state.get() != 0 || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Lease[" + pooled.connection + "]";
+                default:
+                    if (state.get() != 0)
+                        throw new SQLException("The connection has already been returned to the pool");
+                    if (method.getName().equals("prepareStatement")) {
+                        PreparedStatement statement;
+                        if (pooled.statements != null && args.length == 1)
+                            statement = pooled.statements.prepare((String) args[0], (Connection) proxy);
+                        else
+                            statement = (PreparedStatement) invokeOnConnection(method, args);
+                        statement.setQueryTimeout(queryTimeout);
+                        return MeteredStatement.wrap(statement, (String) args[0], statementMetrics);
+                    }
+                    return invokeOnConnection(method, args);
+            }
+        }
+
+        /**
+         * Invokes a method on the physical connection.
+         *
+         * @param method the method.
+         * @param args   the arguments.
+         * @return the result of the method.
+         * @throws Throwable the exception thrown by the method.
+         */
+        private Object invokeOnConnection(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
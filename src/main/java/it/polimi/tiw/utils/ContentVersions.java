@@ -0,0 +1,217 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.enums.ContextAttributes;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class keeps the version counters from which the pages and the API derive their ETags.
+ * <p>
+ * There are three kinds of counters: the tree of each user, bumped when a folder or subfolder is created, the
+ * documents of each subfolder, bumped when a document is created, imported or moved in or out of it, and the
+ * documents of each user, bumped when one of them is moved. A request whose {@code If-None-Match} matches the
+ * current version is answered with 304 Not Modified before any query or template is run.
+ * <p>
+ * Counters are striped: each kind has a fixed number of slots and ids sharing a slot share a counter, so memory
+ * does not grow with the number of users and a collision only causes an extra render. Every ETag contains a random
+ * epoch of this instance, so the counters restarting from zero never validate a stale page.
+ * <p>
+ * The counters are kept in memory and only see the changes made through this instance, so they are disabled when
+ * the requests of a user can be served by any instance, as with the token authentication or the JDBC session store:
+ * {@link #etag} then returns null, the pages are always rendered and the API falls back to ETags computed from
+ * the body.
+ */
+public class ContentVersions {
+
+    /**
+     * Number of slots of each kind of counter, must be a power of two.
+     */
+    private static final int STRIPES = 4096;
+
+    private final String epoch;
+    private final boolean enabled;
+    private final Stripes trees = new Stripes();
+    private final Stripes subFolders = new Stripes();
+    private final Stripes documents = new Stripes();
+
+    /**
+     * Constructor.
+     *
+     * @param enabled whether the ETags are derived from the counters, false if other instances change the content.
+     */
+    public ContentVersions(boolean enabled) {
+        this.enabled = enabled;
+        this.epoch = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+    }
+
+    /**
+     * This method returns the {@link ContentVersions} of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link ContentVersions}.
+     */
+    public static ContentVersions getInstance(ServletContext context) {
+        return (ContentVersions) context.getAttribute(ContextAttributes.CONTENT_VERSIONS.getValue());
+    }
+
+    /**
+     * This method records a change of the folders or subfolders of a user.
+     *
+     * @param userId the id of the user.
+     */
+    public void bumpTree(int userId) {
+        trees.bump(userId);
+    }
+
+    /**
+     * This method records a change of the documents contained in a subfolder.
+     *
+     * @param subFolderId the id of the subfolder.
+     */
+    public void bumpSubFolder(int subFolderId) {
+        subFolders.bump(subFolderId);
+    }
+
+    /**
+     * This method records a change of the details of the documents of a user.
+     *
+     * @param userId the id of the user.
+     */
+    public void bumpDocuments(int userId) {
+        documents.bump(userId);
+    }
+
+    /**
+     * @param userId the id of the user.
+     * @return the {@link Version} of the folders and subfolders of the user.
+     */
+    public Version tree(int userId) {
+        return trees.get(userId);
+    }
+
+    /**
+     * @param subFolderId the id of the subfolder.
+     * @return the {@link Version} of the documents contained in the subfolder.
+     */
+    public Version subFolder(int subFolderId) {
+        return subFolders.get(subFolderId);
+    }
+
+    /**
+     * @param userId the id of the user.
+     * @return the {@link Version} of the details of the documents of the user.
+     */
+    public Version documents(int userId) {
+        return documents.get(userId);
+    }
+
+    /**
+     * This method builds a weak ETag from the parts that identify a representation.
+     *
+     * @param parts the parts, usually the id of the user, the versions and the parameters of the request.
+     * @return the quoted weak ETag, null if the versions are disabled.
+     */
+    public String etag(Object... parts) {
+        if (!enabled)
+            return null;
+        StringBuilder builder = new StringBuilder("W/\"").append(epoch);
+        for (Object part : parts)
+            builder.append('-').append(part);
+        return builder.append('"').toString();
+    }
+
+    /**
+     * This method sets the validators of a response and answers 304 Not Modified if the {@code If-None-Match} header
+     * of the request matches the ETag. {@code If-Modified-Since} alone is ignored, because the same URL shows the
+     * content of whoever is logged in and only the ETag identifies the user.
+     *
+     * @param request      the {@link HttpServletRequest}.
+     * @param response     the {@link HttpServletResponse}.
+     * @param etag         the ETag of the current representation, null if the versions are disabled.
+     * @param lastModified the time in milliseconds of the last change of the representation.
+     * @return true if 304 Not Modified has been sent and the request is complete.
+     */
+    public static boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag, long lastModified) {
+        if (etag == null)
+            return false;
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (!JsonHandler.matches(request, etag))
+            return false;
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * The version of a counter with the time of its last change.
+     *
+     * @param value        the value of the counter.
+     * @param lastModified the time in milliseconds of the last change, in whole seconds.
+     */
+    public record Version(long value, long lastModified) {
+        /**
+         * @param other another {@link Version}.
+         * @return the time of the most recent change of the two.
+         */
+        public long lastModified(Version other) {
+            return Math.max(lastModified, other.lastModified);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(value, 36);
+        }
+    }
+
+    /**
+     * A striped set of counters of one kind.
+     */
+    private static final class Stripes {
+        private final AtomicLongArray values = new AtomicLongArray(STRIPES);
+        private final AtomicLongArray modified = new AtomicLongArray(STRIPES);
+
+        private Stripes() {
+            long now = System.currentTimeMillis() / 1000 * 1000;
+            for (int i = 0; i < STRIPES; i++)
+                modified.set(i, now);
+        }
+
+        /**
+         * Increments the counter of an id. The time is set before the value, so a reader that sees the new value
+         * never sees an older time.
+         *
+         * @param id the id.
+         */
+        private void bump(int id) {
+            int slot = slot(id);
+            modified.accumulateAndGet(slot, System.currentTimeMillis() / 1000 * 1000, Math::max);
+            values.incrementAndGet(slot);
+        }
+
+        /**
+         * @param id the id.
+         * @return the current {@link Version} of the id.
+         */
+        private Version get(int id) {
+            int slot = slot(id);
+            long value = values.get(slot);
+            return new Version(value, modified.get(slot));
+        }
+
+        /**
+         * Spreads the ids, which are mostly consecutive, over the slots.
+         *
+         * @param id the id.
+         * @return the slot of the id.
+         */
+        private static int slot(int id) {
+            int h = id * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (STRIPES - 1);
+        }
+    }
+}
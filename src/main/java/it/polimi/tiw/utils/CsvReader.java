@@ -0,0 +1,138 @@
+package it.polimi.tiw.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class reads the records of a CSV stream (RFC 4180) one at a time, without buffering the whole stream.
+ * <p>
+ * Fields are separated by commas and may be enclosed in double quotes, in which case they can contain commas,
+ * line breaks and doubled quotes. Records longer than the maximum length are consumed but truncated and reported
+ * by {@link #isTruncated()}, so a malformed upload cannot exhaust the memory.
+ */
+public class CsvReader {
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private int line = 1;
+    private int recordLine;
+    private boolean truncated;
+    private int pending = -2;
+
+    /**
+     * Constructor.
+     *
+     * @param reader          the {@link Reader} of the stream, which should be buffered.
+     * @param maxRecordLength the maximum number of characters kept for a record.
+     */
+    public CsvReader(Reader reader, int maxRecordLength) {
+        this.reader = reader;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * This method reads the next record.
+     *
+     * @return the fields of the record or null at the end of the stream.
+     * @throws IOException if an error occurs while reading the stream.
+     */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1)
+            return null;
+        recordLine = line;
+        truncated = false;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int length = 0;
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        length = append(field, '"', length);
+                    } else {
+                        quoted = false;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n')
+                        line++;
+                    length = append(field, (char) c, length);
+                }
+            } else if (c == -1 || c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n')
+                        pending = following;
+                }
+                if (c != -1)
+                    line++;
+                fields.add(field.toString());
+                return fields;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else {
+                length = append(field, (char) c, length);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * @return the line of the stream where the last record started.
+     */
+    public int getLine() {
+        return recordLine;
+    }
+
+    /**
+     * @return true if the last record was longer than the maximum length.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Appends a character to a field unless the record is too long.
+     *
+     * @param field  the field.
+     * @param c      the character.
+     * @param length the length of the record so far.
+     * @return the new length of the record.
+     */
+    private int append(StringBuilder field, char c, int length) {
+        if (length < maxRecordLength)
+            field.append(c);
+        else
+            truncated = true;
+        return length + 1;
+    }
+
+    /**
+     * @return the next character of the stream, or -1 at the end.
+     * @throws IOException if an error occurs while reading the stream.
+     */
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        return reader.read();
+    }
+}
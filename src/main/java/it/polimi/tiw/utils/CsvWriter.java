@@ -0,0 +1,58 @@
+package it.polimi.tiw.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class writes records in CSV format (RFC 4180), quoting the fields only when needed.
+ */
+public class CsvWriter {
+
+    private final Writer writer;
+
+    /**
+     * Constructor.
+     *
+     * @param writer the {@link Writer} to write to, which should be buffered.
+     */
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * This method writes a record. Null fields are written as empty fields.
+     *
+     * @param fields the fields of the record.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void writeRecord(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                writer.write(',');
+            String field = fields[i];
+            if (field == null)
+                continue;
+            if (needsQuotes(field)) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * @param field a field.
+     * @return true if the field contains a separator, a quote or a line break.
+     */
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r')
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,89 @@
+package it.polimi.tiw.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * This class is a bounded pool of {@link Deflater}s.
+ * <p>
+ * A {@link Deflater} allocates a few hundred kilobytes of native memory that is released only by
+ * {@link Deflater#end()}, so creating one per response is expensive. Borrowed deflaters are reset when given back
+ * and the ones exceeding the size of the pool are ended immediately.
+ */
+public class DeflaterPool implements AutoCloseable {
+
+    private final int level;
+    private final boolean nowrap;
+    private final BlockingQueue<Deflater> idle;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param level  the compression level of the deflaters.
+     * @param nowrap true to produce raw deflate data, as needed by gzip, false to produce the zlib format.
+     * @param size   the maximum number of idle deflaters kept by the pool.
+     */
+    public DeflaterPool(int level, boolean nowrap, int size) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+    }
+
+    /**
+     * This method borrows a {@link Deflater}, which must be given back with {@link #giveBack(Deflater)}.
+     *
+     * @return an idle {@link Deflater} or a new one if there is none.
+     */
+    public Deflater borrow() {
+        Deflater deflater = idle.poll();
+        if (deflater != null) {
+            reused.increment();
+            return deflater;
+        }
+        created.increment();
+        return new Deflater(level, nowrap);
+    }
+
+    /**
+     * This method gives back a borrowed {@link Deflater}.
+     *
+     * @param deflater the {@link Deflater}.
+     */
+    public void giveBack(Deflater deflater) {
+        deflater.reset();
+        if (closed || !idle.offer(deflater))
+            deflater.end();
+    }
+
+    /**
+     * @return the number of deflaters created by the pool.
+     */
+    public long getCreated() {
+        return created.sum();
+    }
+
+    /**
+     * @return the number of times an idle deflater has been reused.
+     */
+    public long getReused() {
+        return reused.sum();
+    }
+
+    /**
+     * Ends all the idle deflaters. The ones still borrowed are ended when given back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Deflater deflater;
+        while ((deflater = idle.poll()) != null)
+            deflater.end();
+    }
+}
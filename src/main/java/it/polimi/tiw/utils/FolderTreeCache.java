@@ -0,0 +1,215 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.beans.Folder;
+import it.polimi.tiw.beans.SubFolder;
+import it.polimi.tiw.enums.ContextAttributes;
+import it.polimi.tiw.enums.ContextParameters;
+
+import javax.servlet.ServletContext;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class caches the tree of {@link Folder}s and {@link SubFolder}s of each user.
+ * <p>
+ * The cache is bounded both in size, evicting the least recently used user, and in time.
+ * The write paths that change a tree must call {@link #invalidate(int)} after their update. Only the changes made
+ * through this instance invalidate a tree, so the cache is created empty, with a maximum size of 0, when the requests
+ * of a user can be served by any instance.
+ */
+public class FolderTreeCache {
+
+    /**
+     * Loads the tree of a user when it is not cached.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @return the tree of the user.
+         * @throws SQLException if an error occurs while loading the tree.
+         */
+        Map<Folder, List<SubFolder>> load() throws SQLException;
+    }
+
+    /**
+     * A cached tree with its expiration time.
+     *
+     * @param folders   the tree of the user.
+     * @param expiresAt the time in milliseconds after which the tree is no longer valid.
+     */
+    private record Entry(Map<Folder, List<SubFolder>> folders, long expiresAt) {
+    }
+
+    private final int maxSize;
+    private final long timeToLive;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    /**
+     * Incremented by every invalidation so that a tree loaded before it is not stored.
+     */
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize    the maximum number of users whose tree is cached.
+     * @param timeToLive the time in milliseconds a tree stays in the cache.
+     */
+    public FolderTreeCache(int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > FolderTreeCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * This method creates the {@link FolderTreeCache} of the application from the parameters of the {@link ServletContext}.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link FolderTreeCache}.
+     */
+    public static FolderTreeCache create(ServletContext context) {
+        return new FolderTreeCache(ContextParameters.FOLDER_CACHE_MAX_SIZE.getInt(context, 1000),
+                ContextParameters.FOLDER_CACHE_TTL.getLong(context, 300_000));
+    }
+
+    /**
+     * This method returns the {@link FolderTreeCache} of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link FolderTreeCache}.
+     */
+    public static FolderTreeCache getInstance(ServletContext context) {
+        return (FolderTreeCache) context.getAttribute(ContextAttributes.FOLDER_TREE_CACHE.getValue());
+    }
+
+    /**
+     * This method returns the tree of a user, loading it if it is not cached or expired.
+     *
+     * @param userId the id of the user.
+     * @param loader the {@link Loader} used on a miss.
+     * @return the unmodifiable tree of the user.
+     * @throws SQLException if an error occurs while loading the tree.
+     */
+    public Map<Folder, List<SubFolder>> get(int userId, Loader loader) throws SQLException {
+        long loadGeneration;
+        lock.lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                if (entry.expiresAt() > System.currentTimeMillis()) {
+                    hits.increment();
+                    return entry.folders();
+                }
+                entries.remove(userId);
+                evictions.increment();
+            }
+            misses.increment();
+            loadGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        Map<Folder, List<SubFolder>> folders = copyOf(loader.load());
+        lock.lock();
+        try {
+            if (loadGeneration == generation && maxSize > 0)
+                entries.put(userId, new Entry(folders, System.currentTimeMillis() + timeToLive));
+        } finally {
+            lock.unlock();
+        }
+        return folders;
+    }
+
+    /**
+     * This method removes the tree of a user from the cache.
+     *
+     * @param userId the id of the user.
+     */
+    public void invalidate(int userId) {
+        lock.lock();
+        try {
+            generation++;
+            entries.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method removes all the trees from the cache.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of users whose tree is cached.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of lookups answered by the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to load the tree.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of trees removed because the cache was full or they expired.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Copies a tree into an unmodifiable one that can be shared between requests.
+     *
+     * @param folders the tree to copy.
+     * @return the unmodifiable copy.
+     */
+    private static Map<Folder, List<SubFolder>> copyOf(Map<Folder, List<SubFolder>> folders) {
+        LinkedHashMap<Folder, List<SubFolder>> copy = new LinkedHashMap<>();
+        for (Map.Entry<Folder, List<SubFolder>> entry : folders.entrySet())
+            copy.put(entry.getKey(), List.copyOf(entry.getValue()));
+        return Collections.unmodifiableMap(copy);
+    }
+}
@@ -0,0 +1,100 @@
+package it.polimi.tiw.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a histogram of durations with logarithmic buckets, in the spirit of HdrHistogram.
+ * <p>
+ * Each bucket covers a power of two of microseconds, from {@value #MIN_BUCKET_MICROS} µs to about a minute,
+ * so the index of a value is found from its leading zeros and recording neither allocates nor locks.
+ * The bounds of the buckets are the {@code le} labels of a Prometheus histogram.
+ */
+public class Histogram {
+
+    /**
+     * The upper bound of the first bucket, faster values are counted in it.
+     */
+    static final long MIN_BUCKET_MICROS = 128;
+
+    /**
+     * The number of finite buckets, the last ending at {@code MIN_BUCKET_MICROS << (BUCKETS - 1)}, about 67 s.
+     */
+    static final int BUCKETS = 20;
+
+    private static final int MIN_BUCKET_SHIFT = Long.numberOfTrailingZeros(MIN_BUCKET_MICROS);
+
+    /**
+     * The count of each bucket, the last one for the values above the finite buckets.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos / 1000));
+        sumNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @param micros a duration in microseconds.
+     * @return the index of its bucket.
+     */
+    static int bucketOf(long micros) {
+        if (micros <= MIN_BUCKET_MICROS)
+            return 0;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros - 1) - MIN_BUCKET_SHIFT;
+        return Math.min(bucket, BUCKETS);
+    }
+
+    /**
+     * @param bucket the index of a finite bucket.
+     * @return its upper bound in seconds.
+     */
+    static double upperBoundSeconds(int bucket) {
+        return (MIN_BUCKET_MICROS << bucket) / 1e6;
+    }
+
+    /**
+     * @return the count of each bucket, not cumulative, the last one for the values above the finite buckets.
+     */
+    public long[] getCounts() {
+        long[] snapshot = new long[BUCKETS + 1];
+        for (int i = 0; i < snapshot.length; i++)
+            snapshot[i] = counts.get(i);
+        return snapshot;
+    }
+
+    /**
+     * @return the number of recorded durations.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i <= BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded durations in seconds.
+     */
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    /**
+     * @return the longest recorded duration in seconds.
+     */
+    public double getMaxSeconds() {
+        return maxNanos.get() / 1e9;
+    }
+}
@@ -2,19 +2,111 @@ package it.polimi.tiw.utils;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.function.IntPredicate;
 
+/**
+ * This class contains the validators of the user input.
+ * <p>
+ * The validators scan the strings directly instead of using regular expressions, so they do not allocate
+ * and do not compile any pattern when called.
+ */
 public abstract class InputValidator {
 
+    /**
+     * ASCII letters.
+     */
+    public static final IntPredicate LETTER = c -> (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+
+    /**
+     * ASCII digits.
+     */
+    public static final IntPredicate DIGIT = c -> c >= '0' && c <= '9';
+
+    /**
+     * ASCII letters and digits.
+     */
+    public static final IntPredicate ALPHANUMERIC = LETTER.or(DIGIT);
+
+    /**
+     * The whitespace characters matched by {@code \s} in a regular expression.
+     */
+    public static final IntPredicate WHITESPACE = c -> c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+
     /**
      * Check if a string is an integer
      *
      * @return true if the string represents an integer, false otherwise
      */
     public static boolean isInt(String toCheck, HttpServletResponse response) throws IOException {
-        if (!toCheck.matches("-?\\d+")) {
+        if (parseInt(toCheck) == null) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST);
             return false;
         }
         return true;
     }
+
+    /**
+     * Parses a decimal integer without throwing exceptions.
+     *
+     * @param toParse the string to parse.
+     * @return the integer or null if the string is not an integer or does not fit in an int.
+     */
+    public static Integer parseInt(String toParse) {
+        if (toParse == null)
+            return null;
+        int length = toParse.length();
+        int index = 0;
+        boolean negative = false;
+        if (length > 0 && toParse.charAt(0) == '-') {
+            negative = true;
+            index = 1;
+        }
+        if (index == length)
+            return null;
+        long value = 0;
+        for (; index < length; index++) {
+            char c = toParse.charAt(index);
+            if (c < '0' || c > '9')
+                return null;
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1)
+                return null;
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            return null;
+        return (int) value;
+    }
+
+    /**
+     * Checks if a string has a length in the given range and all its characters are accepted by the predicate.
+     *
+     * @param toCheck   the string to check.
+     * @param minLength the minimum length.
+     * @param maxLength the maximum length.
+     * @param allowed   the characters allowed.
+     * @return true if the string is valid, false otherwise.
+     */
+    public static boolean consistsOf(String toCheck, int minLength, int maxLength, IntPredicate allowed) {
+        if (toCheck == null || toCheck.length() < minLength || toCheck.length() > maxLength)
+            return false;
+        for (int i = 0; i < toCheck.length(); i++)
+            if (!allowed.test(toCheck.charAt(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Checks if a string contains at least one character accepted by the predicate.
+     *
+     * @param toCheck the string to check.
+     * @param wanted  the characters searched.
+     * @return true if at least one character is accepted, false otherwise.
+     */
+    public static boolean contains(String toCheck, IntPredicate wanted) {
+        for (int i = 0; i < toCheck.length(); i++)
+            if (wanted.test(toCheck.charAt(i)))
+                return true;
+        return false;
+    }
 }
@@ -0,0 +1,79 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.beans.StoredSession;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.dao.SessionDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * This class is a {@link SessionStore} that keeps the sessions in the database, borrowing the connections from the
+ * same {@link ConnectionPool} of the DAOs, so that every instance of the application can serve every request.
+ * It is meant to be used behind a {@link CachedSessionStore}.
+ */
+public class JdbcSessionStore implements SessionStore {
+
+    private final ConnectionPool pool;
+
+    /**
+     * Constructor.
+     *
+     * @param pool the {@link ConnectionPool} of the application.
+     */
+    public JdbcSessionStore(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public StoredSession get(String id, long now) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            return new SessionDAO(connection).getSession(id, now);
+        }
+    }
+
+    @Override
+    public void create(String id, User user, long expiresAt) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            new SessionDAO(connection).createSession(id, user, expiresAt);
+        }
+    }
+
+    @Override
+    public void extend(String id, long expiresAt) throws SQLException {
+        extend(Map.of(id, expiresAt));
+    }
+
+    @Override
+    public void extend(Map<String, Long> expirations) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            new SessionDAO(connection).extendSessions(expirations, System.currentTimeMillis() / 1000);
+        }
+    }
+
+    @Override
+    public void delete(String id) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            new SessionDAO(connection).deleteSession(id);
+        }
+    }
+
+    @Override
+    public void purgeExpired(long now) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            SessionDAO sessionDAO = new SessionDAO(connection);
+            int deleted;
+            do {
+                deleted = sessionDAO.deleteExpiredSessions(now);
+            } while (deleted > 0);
+        }
+    }
+
+    /**
+     * The connections belong to the {@link ConnectionPool}, which is closed by the application.
+     */
+    @Override
+    public void close() {
+    }
+}
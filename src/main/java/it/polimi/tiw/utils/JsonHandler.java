@@ -0,0 +1,222 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.beans.Document;
+import it.polimi.tiw.beans.Folder;
+import it.polimi.tiw.beans.SubFolder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * This class is the handler for the JSON responses of the API.
+ * <p>
+ * A response body is produced by a {@link Body} that writes it to a {@link JsonWriter}. The body is first written
+ * to a digest to compute its ETag and then, unless the client already has it, straight to the response, so no
+ * representation of the whole response is kept in memory.
+ */
+public abstract class JsonHandler {
+
+    /**
+     * Size of the buffer between the {@link JsonWriter} and the response.
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Writes the body of a response.
+     */
+    @FunctionalInterface
+    public interface Body {
+        /**
+         * @param json the {@link JsonWriter} to write the body to.
+         * @throws IOException if an error occurs while writing.
+         */
+        void write(JsonWriter json) throws IOException;
+    }
+
+    /**
+     * This method sends a JSON response with its ETag, or 304 Not Modified if the request has a matching
+     * {@code If-None-Match} header. The body must write the same content every time it is called.
+     *
+     * @param request  the {@link HttpServletRequest}.
+     * @param response the {@link HttpServletResponse}.
+     * @param body     the {@link Body} of the response.
+     * @throws IOException if an error occurs while writing the response.
+     */
+    public static void send(HttpServletRequest request, HttpServletResponse response, Body body) throws IOException {
+        DigestWriter digest = new DigestWriter();
+        body.write(new JsonWriter(digest));
+        send(request, response, digest.getTag(), body);
+    }
+
+    /**
+     * This method sends a JSON response with a given ETag, or 304 Not Modified if the request has a matching
+     * {@code If-None-Match} header. Without an ETag, the one of the body is computed as by {@link #send(HttpServletRequest, HttpServletResponse, Body)}.
+     *
+     * @param request  the {@link HttpServletRequest}.
+     * @param response the {@link HttpServletResponse}.
+     * @param etag     the quoted ETag of the body, null to compute it from the body.
+     * @param body     the {@link Body} of the response.
+     * @throws IOException if an error occurs while writing the response.
+     */
+    public static void send(HttpServletRequest request, HttpServletResponse response, String etag, Body body) throws IOException {
+        if (etag == null) {
+            send(request, response, body);
+            return;
+        }
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (matches(request, etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType("application/json");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Writer writer = new BufferedWriter(response.getWriter(), BUFFER_SIZE);
+        body.write(new JsonWriter(writer));
+        writer.flush();
+    }
+
+    /**
+     * This method checks the {@code If-None-Match} header of a request against an ETag, with the weak comparison.
+     *
+     * @param request the {@link HttpServletRequest}.
+     * @param etag    the quoted ETag of the current representation.
+     * @return true if the client already has the representation.
+     */
+    public static boolean matches(HttpServletRequest request, String etag) {
+        String header = request.getHeader("If-None-Match");
+        if (header == null)
+            return false;
+        if (etag.startsWith("W/"))
+            etag = etag.substring(2);
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method writes a {@link Folder} as an object without closing it, so that members can be added.
+     *
+     * @param json   the {@link JsonWriter}.
+     * @param folder the {@link Folder}.
+     * @throws IOException if an error occurs while writing.
+     */
+    public static void beginFolder(JsonWriter json, Folder folder) throws IOException {
+        json.beginObject()
+                .name("id").value(folder.id())
+                .name("name").value(folder.name())
+                .name("creationDate").value(String.valueOf(folder.creationDate()));
+    }
+
+    /**
+     * This method writes a {@link SubFolder} as an object.
+     *
+     * @param json      the {@link JsonWriter}.
+     * @param subFolder the {@link SubFolder}.
+     * @throws IOException if an error occurs while writing.
+     */
+    public static void writeSubFolder(JsonWriter json, SubFolder subFolder) throws IOException {
+        json.beginObject()
+                .name("id").value(subFolder.id())
+                .name("folderId").value(subFolder.folderId())
+                .name("name").value(subFolder.name())
+                .name("creationDate").value(String.valueOf(subFolder.creationDate()))
+                .endObject();
+    }
+
+    /**
+     * This method writes a {@link Document} as an object, with its summary only if it has been read.
+     *
+     * @param json     the {@link JsonWriter}.
+     * @param document the {@link Document}.
+     * @throws IOException if an error occurs while writing.
+     */
+    public static void writeDocument(JsonWriter json, Document document) throws IOException {
+        json.beginObject()
+                .name("id").value(document.id())
+                .name("subFolderId").value(document.subFolderId())
+                .name("name").value(document.name())
+                .name("format").value(document.format());
+        if (document.summary() != null)
+            json.name("summary").value(document.summary());
+        json.name("creationDate").value(String.valueOf(document.creationDate()))
+                .endObject();
+    }
+
+    /**
+     * A {@link Writer} that only computes the digest of what is written.
+     */
+    private static final class DigestWriter extends Writer {
+        private final MessageDigest digest;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private DigestWriter() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void write(int c) {
+            digest.update((byte) (c >> 8));
+            digest.update((byte) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            write(CharBuffer.wrap(chars, offset, length));
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            write(CharBuffer.wrap(string, offset, offset + length));
+        }
+
+        /**
+         * Adds the two bytes of each character to the digest.
+         *
+         * @param chars the characters.
+         */
+        private void write(CharBuffer chars) {
+            while (chars.hasRemaining()) {
+                int n = 0;
+                while (chars.hasRemaining() && n < buffer.length) {
+                    char c = chars.get();
+                    buffer[n++] = (byte) (c >> 8);
+                    buffer[n++] = (byte) c;
+                }
+                digest.update(buffer, 0, n);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * @return the quoted ETag of what has been written.
+         */
+        private String getTag() {
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()).substring(0, 22) + "\"";
+        }
+    }
+}
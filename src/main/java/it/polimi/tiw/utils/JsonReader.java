@@ -0,0 +1,129 @@
+package it.polimi.tiw.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class parses the flat JSON objects whose values are strings, such as the lines of a JSON-lines upload.
+ * Nested objects, arrays, numbers and literals are rejected.
+ */
+public abstract class JsonReader {
+
+    /**
+     * This method parses a JSON object whose values are all strings.
+     *
+     * @param text the text of the object.
+     * @return the members of the object, in their order.
+     * @throws IllegalArgumentException if the text is not such an object.
+     */
+    public static Map<String, String> readStringObject(String text) {
+        Map<String, String> members = new LinkedHashMap<>();
+        int[] position = {skipWhitespace(text, 0)};
+        expect(text, position, '{');
+        if (peek(text, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String name = readString(text, position);
+                expect(text, position, ':');
+                members.put(name, readString(text, position));
+                if (peek(text, position) == ',') {
+                    position[0]++;
+                    continue;
+                }
+                expect(text, position, '}');
+                break;
+            }
+        }
+        if (skipWhitespace(text, position[0]) != text.length())
+            throw new IllegalArgumentException("Unexpected content after the object");
+        return members;
+    }
+
+    /**
+     * Reads a JSON string.
+     *
+     * @param text     the text.
+     * @param position the position of the string, moved after it.
+     * @return the value of the string.
+     */
+    private static String readString(String text, int[] position) {
+        expect(text, position, '"');
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (true) {
+            if (i >= text.length())
+                throw new IllegalArgumentException("Unterminated string");
+            char c = text.charAt(i++);
+            if (c == '"')
+                break;
+            if (c < 0x20)
+                throw new IllegalArgumentException("Control character in a string");
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length())
+                throw new IllegalArgumentException("Unterminated string");
+            char escape = text.charAt(i++);
+            switch (escape) {
+                case '"', '\\', '/' -> value.append(escape);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (i + 4 > text.length())
+                        throw new IllegalArgumentException("Invalid unicode escape");
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid unicode escape");
+                    }
+                    i += 4;
+                }
+                default -> throw new IllegalArgumentException("Invalid escape");
+            }
+        }
+        position[0] = i;
+        return value.toString();
+    }
+
+    /**
+     * Skips the whitespaces and checks the next character.
+     *
+     * @param text     the text.
+     * @param position the current position, moved after the character.
+     * @param expected the expected character.
+     */
+    private static void expect(String text, int[] position, char expected) {
+        if (peek(text, position) != expected)
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + position[0]);
+        position[0]++;
+    }
+
+    /**
+     * Skips the whitespaces and returns the next character without consuming it.
+     *
+     * @param text     the text.
+     * @param position the current position, moved to the next character.
+     * @return the next character or 0 at the end of the text.
+     */
+    private static char peek(String text, int[] position) {
+        position[0] = skipWhitespace(text, position[0]);
+        return position[0] < text.length() ? text.charAt(position[0]) : 0;
+    }
+
+    /**
+     * @param text  the text.
+     * @param start the position to start from.
+     * @return the position of the first non whitespace character.
+     */
+    private static int skipWhitespace(String text, int start) {
+        int i = start;
+        while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\n' || text.charAt(i) == '\r'))
+            i++;
+        return i;
+    }
+}
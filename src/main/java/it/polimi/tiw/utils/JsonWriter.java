@@ -0,0 +1,182 @@
+package it.polimi.tiw.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class writes JSON to a {@link Writer} as it is produced, without building a tree in memory.
+ * <p>
+ * Commas and the escaping of strings are handled by the writer, the caller only opens and closes objects and arrays
+ * and writes names and values in order. The writer does not check that the sequence of calls is valid JSON.
+ */
+public class JsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+
+    /**
+     * Whether the next value of the current object or array must be preceded by a comma.
+     */
+    private boolean comma;
+
+    /**
+     * Constructor.
+     *
+     * @param writer the {@link Writer} to write to, which should be buffered.
+     */
+    public JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @return this writer after opening an object.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter beginObject() throws IOException {
+        separate();
+        writer.write('{');
+        comma = false;
+        return this;
+    }
+
+    /**
+     * @return this writer after closing an object.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter endObject() throws IOException {
+        writer.write('}');
+        comma = true;
+        return this;
+    }
+
+    /**
+     * @return this writer after opening an array.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter beginArray() throws IOException {
+        separate();
+        writer.write('[');
+        comma = false;
+        return this;
+    }
+
+    /**
+     * @return this writer after closing an array.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter endArray() throws IOException {
+        writer.write(']');
+        comma = true;
+        return this;
+    }
+
+    /**
+     * @param name the name of the next member of the current object.
+     * @return this writer.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        writer.write(':');
+        comma = false;
+        return this;
+    }
+
+    /**
+     * @param value a string, or null.
+     * @return this writer.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null)
+            writer.write("null");
+        else
+            string(value);
+        comma = true;
+        return this;
+    }
+
+    /**
+     * @param value a number.
+     * @return this writer.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+        comma = true;
+        return this;
+    }
+
+    /**
+     * @param value a boolean.
+     * @return this writer.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        writer.write(value ? "true" : "false");
+        comma = true;
+        return this;
+    }
+
+    /**
+     * Ends the current top level value, so that the next one starts a new line as in JSON lines.
+     *
+     * @return this writer.
+     * @throws IOException if an error occurs while writing.
+     */
+    public JsonWriter newLine() throws IOException {
+        writer.write('\n');
+        comma = false;
+        return this;
+    }
+
+    /**
+     * Writes a comma if the previous value requires it.
+     *
+     * @throws IOException if an error occurs while writing.
+     */
+    private void separate() throws IOException {
+        if (comma) {
+            writer.write(',');
+            comma = false;
+        }
+    }
+
+    /**
+     * Writes a quoted and escaped string.
+     *
+     * @param value the string.
+     * @throws IOException if an error occurs while writing.
+     */
+    private void string(String value) throws IOException {
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case '\b' -> "\\b";
+                case '\f' -> "\\f";
+                case '\u2028' -> "\\u2028";
+                case '\u2029' -> "\\u2029";
+                default -> c < 0x20 ? "\\u00" + HEX[c >> 4] + HEX[c & 0xf] : null;
+            };
+            if (escape != null) {
+                writer.write(value, start, i - start);
+                writer.write(escape);
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+}
@@ -0,0 +1,54 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.beans.StoredSession;
+import it.polimi.tiw.beans.User;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is a {@link SessionStore} that keeps the sessions in the memory of the instance,
+ * so it is suitable only when there is a single instance or the balancer has sticky sessions.
+ */
+public class MemorySessionStore implements SessionStore {
+
+    private final ConcurrentHashMap<String, StoredSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public StoredSession get(String id, long now) {
+        StoredSession session = sessions.get(id);
+        return session == null || session.expiresAt() <= now ? null : session;
+    }
+
+    @Override
+    public void create(String id, User user, long expiresAt) {
+        sessions.put(id, new StoredSession(user, expiresAt));
+    }
+
+    @Override
+    public void extend(String id, long expiresAt) {
+        sessions.computeIfPresent(id, (key, session) -> session.expiresAt() < expiresAt
+                ? new StoredSession(session.user(), expiresAt) : session);
+    }
+
+    @Override
+    public void delete(String id) {
+        sessions.remove(id);
+    }
+
+    @Override
+    public void purgeExpired(long now) {
+        sessions.values().removeIf(session -> session.expiresAt() <= now);
+    }
+
+    /**
+     * @return the number of sessions in the store.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() {
+        sessions.clear();
+    }
+}
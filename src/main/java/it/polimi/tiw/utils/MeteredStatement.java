@@ -0,0 +1,170 @@
+package it.polimi.tiw.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This class times the executions of a {@link PreparedStatement} lent by the {@link ConnectionPool} and counts
+ * the rows they change, or the rows read from their {@link ResultSet}, in the {@link StatementMetrics} of its query.
+ * <p>
+ * The time of a query is the time of its execution, which for a streamed query ends when the first rows arrive.
+ * The rows read are recorded when the {@link ResultSet} or the statement is closed.
+ */
+final class MeteredStatement implements InvocationHandler {
+
+    private final PreparedStatement statement;
+    private final StatementMetrics.Counters counters;
+    private PreparedStatement proxy;
+    private RowCounter rowCounter;
+
+    private MeteredStatement(PreparedStatement statement, StatementMetrics.Counters counters) {
+        this.statement = statement;
+        this.counters = counters;
+    }
+
+    /**
+     * This method wraps a statement so that its executions are measured.
+     *
+     * @param statement the {@link PreparedStatement}.
+     * @param sql       the query of the statement.
+     * @param metrics   the {@link StatementMetrics} of the pool.
+     * @return the measured {@link PreparedStatement}.
+     */
+    static PreparedStatement wrap(PreparedStatement statement, String sql, StatementMetrics metrics) {
+        MeteredStatement handler = new MeteredStatement(statement, metrics.countersOf(sql));
+        handler.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, handler);
+        return handler.proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "close":
+                recordRows();
+                statement.close();
+                return null;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "MeteredStatement[" + statement + "]";
+            default:
+                if (args == null && name.startsWith("execute"))
+                    return execute(method);
+                return delegate(statement, method, args);
+        }
+    }
+
+    /**
+     * Executes the statement, recording its duration and its rows.
+     *
+     * @param method one of the {@code execute} methods without parameters.
+     * @return the result of the execution, with a {@link ResultSet} wrapped to count its rows.
+     * @throws Throwable the exception of the execution.
+     */
+    private Object execute(Method method) throws Throwable {
+        recordRows();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = delegate(statement, method, null);
+        } catch (Throwable e) {
+            counters.errors.increment();
+            throw e;
+        } finally {
+            counters.executions.record(System.nanoTime() - start);
+        }
+        if (result instanceof ResultSet resultSet) {
+            rowCounter = new RowCounter(resultSet);
+            return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, rowCounter);
+        }
+        if (result instanceof Number count)
+            counters.rows.add(Math.max(0, count.longValue()));
+        else if (result instanceof int[] counts) {
+            for (int count : counts)
+                counters.rows.add(Math.max(0, count));
+        } else if (result instanceof long[] counts) {
+            for (long count : counts)
+                counters.rows.add(Math.max(0, count));
+        }
+        return result;
+    }
+
+    /**
+     * Records the rows read from the last {@link ResultSet}, if any.
+     */
+    private void recordRows() {
+        if (rowCounter != null) {
+            rowCounter.record();
+            rowCounter = null;
+        }
+    }
+
+    /**
+     * Invokes a method on the wrapped object.
+     *
+     * @param target the wrapped object.
+     * @param method the method.
+     * @param args   the arguments.
+     * @return the result of the method.
+     * @throws Throwable the exception thrown by the method.
+     */
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Counts the rows read from a {@link ResultSet}.
+     */
+    private final class RowCounter implements InvocationHandler {
+        private final ResultSet resultSet;
+        private long rows;
+
+        private RowCounter(ResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    boolean hasRow = resultSet.next();
+                    if (hasRow)
+                        rows++;
+                    return hasRow;
+                case "close":
+                    record();
+                    resultSet.close();
+                    return null;
+                case "getStatement":
+                    return MeteredStatement.this.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return delegate(resultSet, method, args);
+            }
+        }
+
+        /**
+         * Adds the rows read so far to the counters of the query.
+         */
+        private void record() {
+            counters.rows.add(rows);
+            rows = 0;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.dao.QueryNames;
+import it.polimi.tiw.enums.ContextAttributes;
+
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * This class collects the metrics of the application and writes them in the Prometheus text format.
+ * <p>
+ * The latency of the requests is recorded per servlet and method in {@link Histogram}s, found without allocating,
+ * while the other components register the families of their own counters and gauges, read only when the metrics
+ * are written. The statements are reported per DAO method, as named by {@link QueryNames}.
+ */
+public class MetricsRegistry {
+
+    /**
+     * The type of a family of metrics.
+     */
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String value;
+
+        Type(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Writes the samples of a family when the metrics are written.
+     */
+    @FunctionalInterface
+    public interface Collector {
+        void collect(Samples samples) throws IOException;
+    }
+
+    /**
+     * The destination of the samples of a family.
+     */
+    public interface Samples {
+        /**
+         * Writes a sample of the family.
+         *
+         * @param value  the value of the sample.
+         * @param labels the names and values of the labels, alternated.
+         * @throws IOException if an error occurs while writing.
+         */
+        void sample(double value, String... labels) throws IOException;
+
+        /**
+         * Writes the buckets, the sum and the count of a histogram of the family.
+         *
+         * @param counts     the count of each bucket of a {@link Histogram}, not cumulative.
+         * @param sumSeconds the sum of the durations in seconds.
+         * @param labels     the names and values of the labels, alternated.
+         * @throws IOException if an error occurs while writing.
+         */
+        void histogram(long[] counts, double sumSeconds, String... labels) throws IOException;
+    }
+
+    /**
+     * A family of metrics.
+     *
+     * @param type      the {@link Type} of the family.
+     * @param help      the description of the family.
+     * @param collector the {@link Collector} of its samples.
+     */
+    private record Family(Type type, String help, Collector collector) {
+    }
+
+    /**
+     * The methods with their own histogram, the others share the last one.
+     */
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "other"};
+
+    /**
+     * The metrics of the requests of a servlet.
+     */
+    private static final class RequestMetrics {
+        private final Histogram[] durations = new Histogram[METHODS.length];
+        private final LongAdder[] statuses = new LongAdder[6];
+
+        private RequestMetrics() {
+            for (int i = 0; i < durations.length; i++)
+                durations[i] = new Histogram();
+            for (int i = 0; i < statuses.length; i++)
+                statuses[i] = new LongAdder();
+        }
+    }
+
+    private final ConcurrentHashMap<String, RequestMetrics> requests = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Constructor.
+     */
+    public MetricsRegistry() {
+        register("http_request_duration_seconds", Type.HISTOGRAM, "Time to process a request, by servlet and method.",
+                samples -> {
+                    for (Map.Entry<String, RequestMetrics> entry : new TreeMap<>(requests).entrySet())
+                        for (int i = 0; i < METHODS.length; i++) {
+                            Histogram histogram = entry.getValue().durations[i];
+                            if (histogram.getCount() > 0)
+                                samples.histogram(histogram.getCounts(), histogram.getSumSeconds(),
+                                        "servlet", entry.getKey(), "method", METHODS[i]);
+                        }
+                });
+        register("http_responses_total", Type.COUNTER, "Responses sent, by servlet and status class.",
+                samples -> {
+                    for (Map.Entry<String, RequestMetrics> entry : new TreeMap<>(requests).entrySet())
+                        for (int i = 1; i < entry.getValue().statuses.length; i++) {
+                            long count = entry.getValue().statuses[i].sum();
+                            if (count > 0)
+                                samples.sample(count, "servlet", entry.getKey(), "status", i + "xx");
+                        }
+                });
+    }
+
+    /**
+     * This method returns the {@link MetricsRegistry} of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link MetricsRegistry}.
+     */
+    public static MetricsRegistry getInstance(ServletContext context) {
+        return (MetricsRegistry) context.getAttribute(ContextAttributes.METRICS_REGISTRY.getValue());
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param servlet the name of the servlet that handled the request.
+     * @param method  the HTTP method of the request.
+     * @param status  the status of the response.
+     * @param nanos   the time to process the request in nanoseconds.
+     */
+    public void recordRequest(String servlet, String method, int status, long nanos) {
+        RequestMetrics metrics = requests.get(servlet);
+        if (metrics == null)
+            metrics = requests.computeIfAbsent(servlet, k -> new RequestMetrics());
+        int index = METHODS.length - 1;
+        for (int i = 0; i < index; i++) {
+            if (METHODS[i].equals(method)) {
+                index = i;
+                break;
+            }
+        }
+        metrics.durations[index].record(nanos);
+        int statusClass = status / 100;
+        metrics.statuses[statusClass >= 1 && statusClass <= 5 ? statusClass : 5].increment();
+    }
+
+    /**
+     * This method registers a family of metrics, replacing the one with the same name.
+     *
+     * @param name      the name of the family.
+     * @param type      the {@link Type} of the family.
+     * @param help      the description of the family.
+     * @param collector the {@link Collector} of its samples.
+     */
+    public void register(String name, Type type, String help, Collector collector) {
+        families.put(name, new Family(type, help, collector));
+    }
+
+    /**
+     * This method registers a gauge without labels.
+     *
+     * @param name  the name of the gauge.
+     * @param help  the description of the gauge.
+     * @param value the current value of the gauge.
+     */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        register(name, Type.GAUGE, help, samples -> samples.sample(value.getAsDouble()));
+    }
+
+    /**
+     * This method registers a counter without labels.
+     *
+     * @param name  the name of the counter.
+     * @param help  the description of the counter.
+     * @param value the current value of the counter.
+     */
+    public void counter(String name, String help, DoubleSupplier value) {
+        register(name, Type.COUNTER, help, samples -> samples.sample(value.getAsDouble()));
+    }
+
+    /**
+     * This method registers the executions of the statements of a {@link ConnectionPool}, merged per DAO method.
+     *
+     * @param metrics the {@link StatementMetrics} of the pool.
+     */
+    public void registerStatements(StatementMetrics metrics) {
+        register("db_query_duration_seconds", Type.HISTOGRAM, "Time to execute the queries, by DAO method.", samples -> {
+            Map<QueryNames.Name, long[]> counts = new LinkedHashMap<>();
+            Map<QueryNames.Name, Double> sums = new LinkedHashMap<>();
+            for (Map.Entry<String, Histogram> entry : metrics.getExecutions().entrySet()) {
+                QueryNames.Name name = QueryNames.of(entry.getKey());
+                long[] merged = counts.computeIfAbsent(name, k -> new long[Histogram.BUCKETS + 1]);
+                long[] bucketCounts = entry.getValue().getCounts();
+                for (int i = 0; i < merged.length; i++)
+                    merged[i] += bucketCounts[i];
+                sums.merge(name, entry.getValue().getSumSeconds(), Double::sum);
+            }
+            for (Map.Entry<QueryNames.Name, long[]> entry : counts.entrySet())
+                samples.histogram(entry.getValue(), sums.get(entry.getKey()),
+                        "dao", entry.getKey().dao(), "method", entry.getKey().method());
+        });
+        registerQueryCounter("db_query_rows_total", "Rows read or changed by the queries, by DAO method.", metrics::getRows);
+        registerQueryCounter("db_query_errors_total", "Failed executions of the queries, by DAO method.", metrics::getErrors);
+        registerQueryCounter("db_statement_prepares_total", "Statements prepared on a connection, by DAO method.", metrics::getPrepares);
+        registerQueryCounter("db_statement_reuses_total", "Cached statements reused, by DAO method.", metrics::getReuses);
+        counter("db_statement_cache_evictions_total", "Statements closed because the cache of their connection was full.",
+                metrics::getEvictions);
+    }
+
+    /**
+     * Registers a counter of the statements, merged per DAO method.
+     *
+     * @param name  the name of the counter.
+     * @param help  the description of the counter.
+     * @param value the values of the counter by query, read at each collection.
+     */
+    private void registerQueryCounter(String name, String help, Supplier<Map<String, Long>> value) {
+        register(name, Type.COUNTER, help, samples -> {
+            Map<QueryNames.Name, Long> merged = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> entry : value.get().entrySet())
+                merged.merge(QueryNames.of(entry.getKey()), entry.getValue(), Long::sum);
+            for (Map.Entry<QueryNames.Name, Long> entry : merged.entrySet())
+                samples.sample(entry.getValue(), "dao", entry.getKey().dao(), "method", entry.getKey().method());
+        });
+    }
+
+    /**
+     * This method writes all the metrics in the Prometheus text format.
+     *
+     * @param writer the {@link Writer} of the response.
+     * @throws IOException if an error occurs while writing.
+     */
+    public void write(Writer writer) throws IOException {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            writer.write("# HELP " + name + " " + family.help() + "\n");
+            writer.write("# TYPE " + name + " " + family.type().value + "\n");
+            family.collector().collect(new Samples() {
+                @Override
+                public void sample(double value, String... labels) throws IOException {
+                    writeSample(writer, name, labels, null, value);
+                }
+
+                @Override
+                public void histogram(long[] counts, double sumSeconds, String... labels) throws IOException {
+                    long cumulative = 0;
+                    for (int i = 0; i < Histogram.BUCKETS; i++) {
+                        cumulative += counts[i];
+                        writeSample(writer, name + "_bucket", labels, format(Histogram.upperBoundSeconds(i)), cumulative);
+                    }
+                    cumulative += counts[Histogram.BUCKETS];
+                    writeSample(writer, name + "_bucket", labels, "+Inf", cumulative);
+                    writeSample(writer, name + "_sum", labels, null, sumSeconds);
+                    writeSample(writer, name + "_count", labels, null, cumulative);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param writer the {@link Writer} of the response.
+     * @param name   the name of the sample.
+     * @param labels the names and values of the labels, alternated.
+     * @param le     the upper bound of a histogram bucket, null if the sample is not a bucket.
+     * @param value  the value of the sample.
+     * @throws IOException if an error occurs while writing.
+     */
+    private static void writeSample(Writer writer, String name, String[] labels, String le, double value) throws IOException {
+        writer.write(name);
+        if (labels.length > 0 || le != null) {
+            writer.write('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0)
+                    writer.write(',');
+                writer.write(labels[i]);
+                writer.write("=\"");
+                writer.write(escape(labels[i + 1]));
+                writer.write('"');
+            }
+            if (le != null) {
+                if (labels.length > 0)
+                    writer.write(',');
+                writer.write("le=\"" + le + "\"");
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(format(value));
+        writer.write('\n');
+    }
+
+    /**
+     * @param value a value.
+     * @return the value in the Prometheus format, without a fraction if it is an integer.
+     */
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    /**
+     * @param value a label value.
+     * @return the value with its backslashes, quotes and new lines escaped.
+     */
+    private static String escape(String value) {
+        if (value == null)
+            return "";
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
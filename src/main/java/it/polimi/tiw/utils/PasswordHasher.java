@@ -0,0 +1,223 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.enums.ContextAttributes;
+import it.polimi.tiw.enums.ContextParameters;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.servlet.ServletContext;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class hashes and verifies passwords with salted PBKDF2.
+ * <p>
+ * Hashing is deliberately expensive, so it runs on a dedicated bounded executor: when too many logins arrive
+ * at the same time they are rejected with a {@link RejectedExecutionException} instead of taking the threads
+ * of the container. Stored hashes have the form {@code pbkdf2_sha256$iterations$salt$hash}; values without that
+ * prefix are legacy plain text passwords, which are still accepted and must be rehashed after a successful login.
+ */
+public class PasswordHasher implements AutoCloseable {
+
+    private static final String PREFIX = "pbkdf2_sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int KEY_LENGTH = 256;
+
+    private final int iterations;
+    private final long timeout;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * The salt of the hashes computed for the identifiers that match no user.
+     */
+    private final byte[] unknownSalt = new byte[SALT_LENGTH];
+
+    /**
+     * Constructor.
+     *
+     * @param iterations the number of PBKDF2 iterations of new hashes.
+     * @param threads    the number of threads that compute hashes.
+     * @param queueSize  the maximum number of hashes waiting for a thread.
+     * @param timeout    the maximum time in milliseconds a request waits for its hash.
+     */
+    public PasswordHasher(int iterations, int threads, int queueSize, long timeout) {
+        this.iterations = iterations;
+        this.timeout = timeout;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "password-hasher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        random.nextBytes(unknownSalt);
+    }
+
+    /**
+     * This method creates the {@link PasswordHasher} of the application from the parameters of the {@link ServletContext}.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link PasswordHasher}.
+     */
+    public static PasswordHasher create(ServletContext context) {
+        return new PasswordHasher(ContextParameters.PASSWORD_HASH_ITERATIONS.getInt(context, 120_000),
+                ContextParameters.PASSWORD_HASH_THREADS.getInt(context, Runtime.getRuntime().availableProcessors()),
+                ContextParameters.PASSWORD_HASH_QUEUE_SIZE.getInt(context, 64),
+                ContextParameters.PASSWORD_HASH_TIMEOUT.getLong(context, 5_000));
+    }
+
+    /**
+     * This method returns the {@link PasswordHasher} of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link PasswordHasher}.
+     */
+    public static PasswordHasher getInstance(ServletContext context) {
+        return (PasswordHasher) context.getAttribute(ContextAttributes.PASSWORD_HASHER.getValue());
+    }
+
+    /**
+     * This method hashes a password with a new random salt.
+     *
+     * @param password the password to hash.
+     * @return the hash to store.
+     * @throws RejectedExecutionException if the hashing executor is saturated or the hash takes too long.
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = run(() -> pbkdf2(password, salt, iterations));
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * This method checks a password against a stored hash or legacy plain text password.
+     *
+     * @param password the password to check.
+     * @param stored   the stored hash.
+     * @return true if the password matches, false otherwise.
+     * @throws RejectedExecutionException if the hashing executor is saturated or the hash takes too long.
+     */
+    public boolean verify(String password, String stored) {
+        if (stored == null)
+            return false;
+        if (isLegacy(stored))
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4)
+            return false;
+        int storedIterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            storedIterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        byte[] actual = run(() -> pbkdf2(password, salt, storedIterations));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * This method spends the time of a verification on a login whose identifier matches no user, so that its
+     * answer is not faster than the one of a wrong password of an existing user.
+     *
+     * @param password the password to check.
+     * @throws RejectedExecutionException if the hashing executor is saturated or the hash takes too long.
+     */
+    public void verifyUnknown(String password) {
+        run(() -> pbkdf2(password, unknownSalt, iterations));
+    }
+
+    /**
+     * This method checks if a stored hash should be replaced, because it is a legacy plain text password
+     * or it was computed with fewer iterations than the current ones.
+     *
+     * @param stored the stored hash.
+     * @return true if the password should be hashed again.
+     */
+    public boolean needsRehash(String stored) {
+        if (isLegacy(stored))
+            return true;
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Stops the hashing threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param stored the stored password.
+     * @return true if the stored password is not hashed.
+     */
+    private static boolean isLegacy(String stored) {
+        return !stored.startsWith(PREFIX + "$");
+    }
+
+    /**
+     * Runs a hashing task on the executor and waits for its result.
+     *
+     * @param task the task to run.
+     * @return the result of the task.
+     * @throws RejectedExecutionException if the task cannot be run or does not complete in time.
+     */
+    private byte[] run(Callable<byte[]> task) {
+        Future<byte[]> future = executor.submit(task);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password hashing timed out", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while hashing the password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot hash the password", e.getCause());
+        }
+    }
+
+    /**
+     * Computes the PBKDF2 hash of a password.
+     *
+     * @param password   the password.
+     * @param salt       the salt.
+     * @param iterations the number of iterations.
+     * @return the hash.
+     * @throws GeneralSecurityException if the algorithm is not available.
+     */
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_LENGTH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
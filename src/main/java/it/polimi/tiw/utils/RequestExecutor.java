@@ -0,0 +1,226 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.enums.ContextAttributes;
+import it.polimi.tiw.enums.ContextParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class runs the requests of the asynchronous controllers outside the threads of the container.
+ * <p>
+ * The executor is bounded: when all its threads are busy, as when the database is slow, requests wait in a
+ * bounded queue and the ones that do not fit are rejected with a {@link RejectedExecutionException}, to be answered
+ * with 503, as are the ones still waiting when the queue timeout expires. The threads of the container stay free for
+ * the requests that do not need the database. A running request is never interrupted: its statements are bounded
+ * by the query timeout of the {@link ConnectionPool} instead.
+ * <p>
+ * On Java 21 the requests can instead run on virtual threads, one per request: a request waiting for the database
+ * then costs a few kilobytes instead of a platform thread, and the {@link ConnectionPool} is the only limit to the
+ * concurrency. The locks of the pool and the caches are {@link java.util.concurrent.locks.ReentrantLock}s and
+ * {@link java.util.concurrent.Semaphore}s, never {@code synchronized}, so a waiting virtual thread does not pin
+ * its carrier.
+ */
+public class RequestExecutor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+
+    private final ExecutorService executor;
+
+    /**
+     * The bounded executor of platform threads, null when the requests run on virtual threads.
+     */
+    private final ThreadPoolExecutor platformExecutor;
+    private final int retryAfter;
+    private final long queueTimeout;
+
+    /**
+     * The timer expiring the requests waiting too long in the queue.
+     */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "request-executor-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param threads      the number of threads that run the requests.
+     * @param queueSize    the maximum number of requests waiting for a thread.
+     * @param retryAfter   the time in seconds a rejected client is asked to wait.
+     * @param queueTimeout the maximum time in milliseconds a request waits for a thread, 0 for no limit.
+     */
+    public RequestExecutor(int threads, int queueSize, int retryAfter, long queueTimeout) {
+        this.retryAfter = retryAfter;
+        this.queueTimeout = queueTimeout;
+        AtomicInteger counter = new AtomicInteger();
+        this.platformExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+            Thread thread = new Thread(r, "request-executor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor = platformExecutor;
+    }
+
+    /**
+     * Constructor of an executor that runs each request on a new virtual thread.
+     *
+     * @param virtualExecutor the virtual thread per task {@link ExecutorService}.
+     * @param retryAfter      the time in seconds a rejected client is asked to wait.
+     * @param queueTimeout    the maximum time in milliseconds a request waits for a thread, 0 for no limit.
+     */
+    private RequestExecutor(ExecutorService virtualExecutor, int retryAfter, long queueTimeout) {
+        this.retryAfter = retryAfter;
+        this.queueTimeout = queueTimeout;
+        this.platformExecutor = null;
+        this.executor = virtualExecutor;
+    }
+
+    /**
+     * This method creates the {@link RequestExecutor} of the application from the parameters of the {@link ServletContext}.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link RequestExecutor}.
+     */
+    public static RequestExecutor create(ServletContext context) {
+        int retryAfter = ContextParameters.REQUEST_RETRY_AFTER.getInt(context, 1);
+        long queueTimeout = ContextParameters.REQUEST_QUEUE_TIMEOUT.getLong(context, 30_000);
+        if (ContextParameters.REQUEST_VIRTUAL_THREADS.getBoolean(context, false)) {
+            ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualExecutor != null)
+                return new RequestExecutor(virtualExecutor, retryAfter, queueTimeout);
+            logger.warn("Virtual threads need Java 21, the requests run on platform threads");
+        }
+        return new RequestExecutor(ContextParameters.REQUEST_THREADS.getInt(context, 16),
+                ContextParameters.REQUEST_QUEUE_SIZE.getInt(context, 200), retryAfter, queueTimeout);
+    }
+
+    /**
+     * This method looks up {@code Executors.newVirtualThreadPerTaskExecutor}, so that the application still
+     * compiles and runs on Java 17.
+     *
+     * @return the virtual thread per task {@link ExecutorService} or null if the runtime has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method returns the {@link RequestExecutor} of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link RequestExecutor} or null if requests are run by the container.
+     */
+    public static RequestExecutor getInstance(ServletContext context) {
+        return (RequestExecutor) context.getAttribute(ContextAttributes.REQUEST_EXECUTOR.getValue());
+    }
+
+    /**
+     * This method runs a request on a thread of the executor.
+     *
+     * @param task the request to run.
+     * @throws RejectedExecutionException if the executor is saturated or closed.
+     */
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                running.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * This method runs a task once the queue timeout has expired, to answer a request still waiting for a thread.
+     *
+     * @param task the task to run.
+     * @return the {@link ScheduledFuture} of the task, to cancel it when the request starts, or null if there is no limit.
+     */
+    public ScheduledFuture<?> onQueueTimeout(Runnable task) {
+        if (queueTimeout <= 0)
+            return null;
+        try {
+            return timer.schedule(task, queueTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The executor is closing, its queued requests are dropped anyway.
+            return null;
+        }
+    }
+
+    /**
+     * @return the time in seconds a rejected client is asked to wait, for the {@code Retry-After} header.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return the maximum time in milliseconds a request waits for a thread, 0 for no limit.
+     */
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    /**
+     * @return true if the requests run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return platformExecutor == null;
+    }
+
+    /**
+     * @return the number of requests running.
+     */
+    public int getActive() {
+        return running.get();
+    }
+
+    /**
+     * @return the number of requests waiting for a thread, always 0 with virtual threads.
+     */
+    public int getQueued() {
+        return platformExecutor == null ? 0 : platformExecutor.getQueue().size();
+    }
+
+    /**
+     * @return the number of requests rejected because the executor was saturated.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops the threads, interrupting the running requests.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,125 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.enums.SchemaMigrations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class brings the database schema to the latest {@link SchemaMigrations} version.
+ * <p>
+ * The applied versions are recorded in the {@code schema_version} table and a named lock prevents two instances
+ * of the application from migrating the same database at the same time.
+ */
+public abstract class SchemaMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final String LOCK_NAME = "tiw2022_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    /**
+     * This method applies the {@link SchemaMigrations} not yet applied to the database.
+     *
+     * @param connection the {@link Connection} to the database.
+     * @return the number of migrations applied.
+     * @throws SQLException if a migration fails or the lock cannot be acquired.
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        try (PreparedStatement lock = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            lock.setString(1, LOCK_NAME);
+            lock.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = lock.executeQuery()) {
+                if (!resultSet.next() || resultSet.getInt(1) != 1)
+                    throw new SQLException("Cannot acquire the schema migration lock");
+            }
+        }
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL PRIMARY KEY, " +
+                        "script VARCHAR(100) NOT NULL, appliedOn TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            }
+            int current = getVersion(connection);
+            int applied = 0;
+            for (SchemaMigrations migration : SchemaMigrations.values()) {
+                if (migration.getVersion() <= current)
+                    continue;
+                logger.info("Applying schema migration {}", migration.getScript());
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : readStatements(migration))
+                        statement.execute(sql);
+                }
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO schema_version (version, script) VALUES (?, ?)")) {
+                    statement.setInt(1, migration.getVersion());
+                    statement.setString(2, migration.getScript());
+                    statement.executeUpdate();
+                }
+                applied++;
+            }
+            return applied;
+        } finally {
+            try (PreparedStatement unlock = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                unlock.setString(1, LOCK_NAME);
+                unlock.executeQuery().close();
+            }
+        }
+    }
+
+    /**
+     * @param connection the {@link Connection} to the database.
+     * @return the version of the schema, 0 if no migration has been applied.
+     * @throws SQLException if an error occurs during the query.
+     */
+    private static int getVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Reads the statements of a migration script. Statements end with a semicolon at the end of a line
+     * and lines starting with {@code --} are comments.
+     *
+     * @param migration the migration.
+     * @return the statements of the script.
+     * @throws SQLException if the script cannot be read.
+     */
+    private static List<String> readStatements(SchemaMigrations migration) throws SQLException {
+        String script;
+        try (InputStream stream = SchemaMigrator.class.getResourceAsStream(SchemaMigrations.LOCATION + migration.getScript())) {
+            if (stream == null)
+                throw new SQLException("Missing migration script " + migration.getScript());
+            script = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Cannot read migration script " + migration.getScript(), e);
+        }
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--"))
+                continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                current.setLength(current.lastIndexOf(";"));
+                statements.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank())
+            statements.add(current.toString());
+        return statements;
+    }
+}
@@ -0,0 +1,76 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.beans.StoredSession;
+import it.polimi.tiw.beans.User;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * This interface is a store of the sessions of the logged users, identified by an opaque id.
+ * All the times are in seconds since the epoch.
+ */
+public interface SessionStore extends AutoCloseable {
+
+    /**
+     * This method returns a session that has not expired.
+     *
+     * @param id  the id of the session.
+     * @param now the current time.
+     * @return the {@link StoredSession} or null if it does not exist or has expired.
+     * @throws SQLException if the store cannot be read.
+     */
+    StoredSession get(String id, long now) throws SQLException;
+
+    /**
+     * This method creates a session.
+     *
+     * @param id        the id of the session.
+     * @param user      the logged {@link User}.
+     * @param expiresAt the time after which the session is no longer valid.
+     * @throws SQLException if the store cannot be written.
+     */
+    void create(String id, User user, long expiresAt) throws SQLException;
+
+    /**
+     * This method extends the expiration of a session that is still valid. The store may apply it later.
+     *
+     * @param id        the id of the session.
+     * @param expiresAt the new expiration time.
+     * @throws SQLException if the store cannot be written.
+     */
+    void extend(String id, long expiresAt) throws SQLException;
+
+    /**
+     * This method extends the expiration of many sessions that are still valid.
+     *
+     * @param expirations the new expiration time of each session, by id.
+     * @throws SQLException if the store cannot be written.
+     */
+    default void extend(Map<String, Long> expirations) throws SQLException {
+        for (Map.Entry<String, Long> expiration : expirations.entrySet())
+            extend(expiration.getKey(), expiration.getValue());
+    }
+
+    /**
+     * This method deletes a session.
+     *
+     * @param id the id of the session.
+     * @throws SQLException if the store cannot be written.
+     */
+    void delete(String id) throws SQLException;
+
+    /**
+     * This method removes the expired sessions.
+     *
+     * @param now the current time.
+     * @throws SQLException if the store cannot be written.
+     */
+    void purgeExpired(long now) throws SQLException;
+
+    /**
+     * Releases the resources of the store, writing what has not been written yet.
+     */
+    @Override
+    void close();
+}
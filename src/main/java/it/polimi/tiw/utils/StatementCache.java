@@ -0,0 +1,195 @@
+package it.polimi.tiw.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the {@link PreparedStatement}s of a single physical {@link Connection} of the {@link ConnectionPool},
+ * so that each query is prepared once per connection and reused by all the requests that borrow it.
+ * <p>
+ * The statements are lent as proxies: closing a proxy closes its {@link ResultSet} and clears the parameters and the batch,
+ * but keeps the statement open for the next request. The least recently used statements are closed when the cache
+ * is full. A connection is used by one request at a time, so this class is not thread safe.
+ */
+class StatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    /**
+     * A prepared statement with the state of its current loan.
+     */
+    private static final class Entry {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+        private ResultSet resultSet;
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final Connection connection;
+    private final StatementMetrics metrics;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param connection the physical {@link Connection}.
+     * @param maxSize    the maximum number of statements kept open.
+     * @param metrics    the {@link StatementMetrics} of the pool.
+     */
+    StatementCache(Connection connection, int maxSize, StatementMetrics metrics) {
+        this.connection = connection;
+        this.metrics = metrics;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize)
+                    return false;
+                metrics.recordEviction();
+                Entry entry = eldest.getValue();
+                entry.evicted = true;
+                if (!entry.inUse)
+                    closeQuietly(entry.statement);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * This method lends the statement of a query, preparing it if it is not cached yet.
+     * If the statement of the query is already lent, e.g. while iterating a cursor, an uncached one is prepared.
+     *
+     * @param sql   the query.
+     * @param owner the {@link Connection} returned by {@link PreparedStatement#getConnection()}.
+     * @return the lent {@link PreparedStatement}, which must be closed to give it back.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse && entry.statement.isClosed()) {
+            entries.remove(sql);
+            entry = null;
+        }
+        if (entry != null && entry.inUse) {
+            metrics.recordPrepare(sql);
+            return connection.prepareStatement(sql);
+        }
+        if (entry == null) {
+            entry = new Entry(connection.prepareStatement(sql));
+            metrics.recordPrepare(sql);
+            entries.put(sql, entry);
+        } else {
+            metrics.recordReuse(sql);
+        }
+        entry.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Loan(entry, owner));
+    }
+
+    /**
+     * Takes back the statements that have not been closed by the request that borrowed the connection.
+     */
+    void releaseAll() {
+        for (Entry entry : entries.values()) {
+            if (entry.inUse)
+                release(entry);
+        }
+    }
+
+    /**
+     * Resets a statement so that it can be lent again.
+     *
+     * @param entry the statement.
+     */
+    private static void release(Entry entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            closeQuietly(entry.statement);
+            return;
+        }
+        try {
+            if (entry.resultSet != null)
+                entry.resultSet.close();
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+        } catch (SQLException e) {
+            closeQuietly(entry.statement);
+        } finally {
+            entry.resultSet = null;
+        }
+    }
+
+    /**
+     * Closes a statement ignoring the errors.
+     *
+     * @param statement the statement to close.
+     */
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.debug("Cannot close a cached statement", e);
+        }
+    }
+
+    /**
+     * A loan of a cached statement to a single request.
+     */
+    private static final class Loan implements InvocationHandler {
+        private final Entry entry;
+        private final Connection owner;
+        private boolean closed;
+
+        private Loan(Entry entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    if (closed)
+                        throw new SQLException("The statement has already been closed");
+                    try {
+                        Object result = method.invoke(entry.statement, args);
+                        if (result instanceof ResultSet resultSet)
+                            entry.resultSet = resultSet;
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
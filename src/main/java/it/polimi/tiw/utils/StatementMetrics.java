@@ -0,0 +1,115 @@
+package it.polimi.tiw.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts, for each query, how many times it has been prepared on a connection and how many times
+ * an already prepared statement has been reused. It is shared by all the connections of a {@link ConnectionPool}.
+ * <p>
+ * It also times the executions of each query and counts the rows they read or change, see {@link MeteredStatement}.
+ */
+public class StatementMetrics {
+
+    /**
+     * The counters of a query.
+     */
+    static final class Counters {
+        private final LongAdder prepares = new LongAdder();
+        private final LongAdder reuses = new LongAdder();
+        final Histogram executions = new Histogram();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<>();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Records that a query has been prepared on a connection.
+     *
+     * @param sql the query.
+     */
+    void recordPrepare(String sql) {
+        countersOf(sql).prepares.increment();
+    }
+
+    /**
+     * Records that a cached statement has been reused.
+     *
+     * @param sql the query.
+     */
+    void recordReuse(String sql) {
+        countersOf(sql).reuses.increment();
+    }
+
+    /**
+     * @param sql the query.
+     * @return the counters of the query, created on its first use.
+     */
+    Counters countersOf(String sql) {
+        Counters counter = counters.get(sql);
+        return counter != null ? counter : counters.computeIfAbsent(sql, k -> new Counters());
+    }
+
+    /**
+     * Records that a statement has been closed because the cache of its connection was full.
+     */
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * @return the number of times each query has been prepared, ordered by query.
+     */
+    public Map<String, Long> getPrepares() {
+        Map<String, Long> prepares = new TreeMap<>();
+        counters.forEach((sql, counter) -> prepares.put(sql, counter.prepares.sum()));
+        return prepares;
+    }
+
+    /**
+     * @return the number of times a prepared statement of each query has been reused, ordered by query.
+     */
+    public Map<String, Long> getReuses() {
+        Map<String, Long> reuses = new TreeMap<>();
+        counters.forEach((sql, counter) -> reuses.put(sql, counter.reuses.sum()));
+        return reuses;
+    }
+
+    /**
+     * @return the durations of the executions of each query, ordered by query.
+     */
+    public Map<String, Histogram> getExecutions() {
+        Map<String, Histogram> executions = new TreeMap<>();
+        counters.forEach((sql, counter) -> executions.put(sql, counter.executions));
+        return executions;
+    }
+
+    /**
+     * @return the number of rows read or changed by each query, ordered by query.
+     */
+    public Map<String, Long> getRows() {
+        Map<String, Long> rows = new TreeMap<>();
+        counters.forEach((sql, counter) -> rows.put(sql, counter.rows.sum()));
+        return rows;
+    }
+
+    /**
+     * @return the number of failed executions of each query, ordered by query.
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> errors = new TreeMap<>();
+        counters.forEach((sql, counter) -> errors.put(sql, counter.errors.sum()));
+        return errors;
+    }
+
+    /**
+     * @return the number of statements closed because the cache of their connection was full.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
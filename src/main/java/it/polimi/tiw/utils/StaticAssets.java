@@ -0,0 +1,121 @@
+package it.polimi.tiw.utils;
+
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class knows the content hash of each static asset of the application, that is of each resource outside
+ * {@code WEB-INF} and {@code META-INF}. The hashes are computed once, when the application starts, and are used
+ * to version the URLs of the assets so that they can be cached forever.
+ */
+public class StaticAssets {
+
+    /**
+     * Name of the query parameter carrying the content hash of an asset.
+     */
+    public static final String VERSION_PARAMETER = "v";
+
+    /**
+     * Length of the content hashes, in base64url characters.
+     */
+    private static final int HASH_LENGTH = 12;
+
+    private final Map<String, String> hashes;
+
+    /**
+     * Constructor.
+     *
+     * @param hashes the content hash of each asset, by path.
+     */
+    public StaticAssets(Map<String, String> hashes) {
+        this.hashes = Collections.unmodifiableMap(new HashMap<>(hashes));
+    }
+
+    /**
+     * This method hashes all the static assets of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link StaticAssets}.
+     * @throws IOException if an asset cannot be read.
+     */
+    public static StaticAssets scan(ServletContext context) throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        scan(context, "/", hashes);
+        return new StaticAssets(hashes);
+    }
+
+    /**
+     * @param path the path of a resource, relative to the context.
+     * @return the content hash of the asset or null if the path is not a static asset.
+     */
+    public String getHash(String path) {
+        return hashes.get(path);
+    }
+
+    /**
+     * This method adds the content hash to the URL of a static asset.
+     *
+     * @param contextPath the context path of the application.
+     * @param url         the URL, including the context path.
+     * @return the versioned URL or the same URL if it is not a static asset or already has a query.
+     */
+    public String versioned(String contextPath, String url) {
+        if (!url.startsWith(contextPath) || url.indexOf('?') >= 0 || url.indexOf(';') >= 0)
+            return url;
+        String hash = hashes.get(url.substring(contextPath.length()));
+        return hash == null ? url : url + "?" + VERSION_PARAMETER + "=" + hash;
+    }
+
+    /**
+     * Hashes the assets found under a directory.
+     *
+     * @param context   the {@link ServletContext} of the application.
+     * @param directory the path of the directory.
+     * @param hashes    the map to fill.
+     * @throws IOException if an asset cannot be read.
+     */
+    private static void scan(ServletContext context, String directory, Map<String, String> hashes) throws IOException {
+        Set<String> paths = context.getResourcePaths(directory);
+        if (paths == null)
+            return;
+        for (String path : paths) {
+            if (path.startsWith("/WEB-INF/") || path.startsWith("/META-INF/"))
+                continue;
+            if (path.endsWith("/"))
+                scan(context, path, hashes);
+            else {
+                try (InputStream input = context.getResourceAsStream(path)) {
+                    if (input != null)
+                        hashes.put(path, hash(input));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param input the content of an asset.
+     * @return the content hash.
+     * @throws IOException if the content cannot be read.
+     */
+    private static String hash(InputStream input) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = input.read(buffer)) > 0)
+            digest.update(buffer, 0, n);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()).substring(0, HASH_LENGTH);
+    }
+}
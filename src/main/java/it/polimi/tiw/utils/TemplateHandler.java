@@ -1,31 +1,122 @@
 package it.polimi.tiw.utils;
 
+import it.polimi.tiw.enums.ContextAttributes;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.enums.TemplatePages;
 import it.polimi.tiw.enums.TemplateResolverParameters;
+import org.thymeleaf.IThrottledTemplateProcessor;
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.StandardCache;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IContext;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresolver.ServletContextTemplateResolver;
 
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
 
 /**
- * This class handles the creation of the template engine.
+ * This class handles the creation of the template engine shared by the servlets.
  */
 public abstract class TemplateHandler {
 
     /**
-     * Creates a {@link TemplateEngine}.
+     * Creates the {@link TemplateEngine} shared by all the servlets of the application
+     * and parses all the {@link TemplatePages} into its cache.
+     * The layout is not parsed here: the fragment a page inserts is cached under a key that depends on that page,
+     * so it is parsed and cached the first time each page is rendered.
      *
-     * @param context the {@link ServletContext} of the {@link javax.servlet.Servlet}.
+     * @param context the {@link ServletContext} of the application.
      * @return the {@link TemplateEngine}.
      */
-    public static TemplateEngine getTemplateEngine(ServletContext context) {
+    public static TemplateEngine createTemplateEngine(ServletContext context) {
         ServletContextTemplateResolver templateResolver = new ServletContextTemplateResolver(context);
         templateResolver.setTemplateMode(TemplateMode.HTML);
         templateResolver.setPrefix(TemplateResolverParameters.PREFIX.getValue());
         templateResolver.setSuffix(TemplateResolverParameters.SUFFIX.getValue());
+        templateResolver.setCacheable(true);
+        long cacheTtl = ContextParameters.TEMPLATE_CACHE_TTL.getLong(context,
+                Long.parseLong(TemplateResolverParameters.CACHE_TTL.getValue()));
+        if (cacheTtl > 0)
+            templateResolver.setCacheTTLMs(cacheTtl);
+
+        StandardCacheManager cacheManager = new StandardCacheManager();
+        cacheManager.setTemplateCacheMaxSize(ContextParameters.TEMPLATE_CACHE_MAX_SIZE.getInt(context,
+                Integer.parseInt(TemplateResolverParameters.CACHE_MAX_SIZE.getValue())));
+        cacheManager.setTemplateCacheEnableCounters(true);
 
         TemplateEngine templateEngine = new TemplateEngine();
         templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.setCacheManager(cacheManager);
+
+        // Creating a throttled processor parses the template into the cache without rendering it.
+        for (TemplatePages page : TemplatePages.values())
+            templateEngine.processThrottled(page.getValue(), new Context());
         return templateEngine;
     }
+
+    /**
+     * Returns the {@link TemplateEngine} shared by all the servlets of the application.
+     *
+     * @param context the {@link ServletContext} of the {@link javax.servlet.Servlet}.
+     * @return the {@link TemplateEngine}.
+     */
+    public static TemplateEngine getTemplateEngine(ServletContext context) {
+        return (TemplateEngine) context.getAttribute(ContextAttributes.TEMPLATE_ENGINE.getValue());
+    }
+
+    /**
+     * @param context the {@link ServletContext} of the application.
+     * @return the number of templates found in the cache of the shared {@link TemplateEngine}.
+     */
+    public static long getTemplateCacheHits(ServletContext context) {
+        StandardCache<?, ?> cache = getTemplateCache(context);
+        return cache == null ? 0 : cache.getHitCount();
+    }
+
+    /**
+     * @param context the {@link ServletContext} of the application.
+     * @return the number of templates that had to be parsed by the shared {@link TemplateEngine}.
+     */
+    public static long getTemplateCacheMisses(ServletContext context) {
+        StandardCache<?, ?> cache = getTemplateCache(context);
+        return cache == null ? 0 : cache.getMissCount();
+    }
+
+    /**
+     * @param context the {@link ServletContext} of the application.
+     * @return the template cache of the shared {@link TemplateEngine} or null if it is not available.
+     */
+    private static StandardCache<?, ?> getTemplateCache(ServletContext context) {
+        TemplateEngine templateEngine = getTemplateEngine(context);
+        if (templateEngine == null || !(templateEngine.getCacheManager().getTemplateCache() instanceof StandardCache<?, ?> cache))
+            return null;
+        return cache;
+    }
+
+    /**
+     * Renders a template writing it to the response in chunks, flushing each one as soon as it is produced.
+     * Lazy variables such as {@link it.polimi.tiw.dao.Cursor}s are read only while their part of the page is rendered,
+     * so the client receives the first bytes before the whole page has been computed.
+     *
+     * @param templateEngine the {@link TemplateEngine}.
+     * @param template       the name of the template.
+     * @param context        the context of the template.
+     * @param response       the {@link HttpServletResponse} to write to.
+     * @param servletContext the {@link ServletContext} of the application.
+     * @throws IOException if an input or output error occurs.
+     */
+    public static void processStreaming(TemplateEngine templateEngine, String template, IContext context,
+                                        HttpServletResponse response, ServletContext servletContext) throws IOException {
+        int chunkSize = ContextParameters.TEMPLATE_FLUSH_SIZE.getInt(servletContext, 8192);
+        IThrottledTemplateProcessor processor = templateEngine.processThrottled(template, context);
+        PrintWriter writer = response.getWriter();
+        while (!processor.isFinished()) {
+            processor.process(chunkSize, writer);
+            writer.flush();
+        }
+    }
 }
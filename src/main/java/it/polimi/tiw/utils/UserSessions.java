@@ -0,0 +1,420 @@
+package it.polimi.tiw.utils;
+
+import it.polimi.tiw.beans.StoredSession;
+import it.polimi.tiw.beans.User;
+import it.polimi.tiw.enums.AuthMode;
+import it.polimi.tiw.enums.ContextAttributes;
+import it.polimi.tiw.enums.ContextParameters;
+import it.polimi.tiw.enums.SessionStoreType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.ServletContext;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class remembers the logged {@link User} between requests.
+ * <p>
+ * In {@link AuthMode#SESSION} mode the user is an attribute of the {@link HttpSession}. In {@link AuthMode#TOKEN}
+ * mode it is carried by a cookie signed with HMAC-SHA256, so any instance sharing the secret can authenticate the
+ * request without sticky sessions or session replication; such a token stays valid until it expires, even after
+ * logout. In {@link AuthMode#STORE} mode a random cookie identifies a session of a {@link SessionStore}, which
+ * only keeps the hash of the cookie and extends the session while it is used. In all the modes a session is never
+ * created by a lookup, and the user found is kept as the {@code user} attribute of the request, where the templates
+ * read it.
+ */
+public class UserSessions implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSessions.class);
+
+    /**
+     * Name of the attribute of the request and of the session holding the {@link User}.
+     */
+    public static final String USER_ATTRIBUTE = "user";
+
+    /**
+     * Name of the cookie carrying the token.
+     */
+    private static final String TOKEN_COOKIE = "auth";
+
+    /**
+     * Name of the cookie carrying the id of a session of the store.
+     */
+    private static final String SESSION_COOKIE = "sid";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Number of random bytes of a session id.
+     */
+    private static final int SESSION_ID_LENGTH = 32;
+
+    /**
+     * A session of the store is extended only if its expiration would move by more than this, in seconds,
+     * so that requests close together do not write it again.
+     */
+    private static final long EXTENSION_GRANULARITY = 60;
+
+    /**
+     * Interval between two removals of the expired sessions of the store.
+     */
+    private static final long PURGE_PERIOD_MILLIS = 60_000;
+
+    private final AuthMode mode;
+    private final SecretKeySpec key;
+    private final long tokenTimeToLive;
+    private final SessionStore store;
+    private final long sessionTimeout;
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService housekeeper;
+
+    /**
+     * Constructor.
+     *
+     * @param mode            the {@link AuthMode}.
+     * @param secret          the secret signing the tokens, used only in {@link AuthMode#TOKEN} mode.
+     * @param tokenTimeToLive the time in seconds a token stays valid.
+     * @param store           the {@link SessionStore}, used only in {@link AuthMode#STORE} mode.
+     * @param sessionTimeout  the time in seconds after which an unused session of the store expires.
+     */
+    public UserSessions(AuthMode mode, byte[] secret, long tokenTimeToLive, SessionStore store, long sessionTimeout) {
+        this.mode = mode;
+        this.key = mode == AuthMode.TOKEN ? new SecretKeySpec(secret, ALGORITHM) : null;
+        this.tokenTimeToLive = tokenTimeToLive;
+        this.store = mode == AuthMode.STORE ? store : null;
+        this.sessionTimeout = sessionTimeout;
+        if (this.store != null) {
+            this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "session-store-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeper.scheduleWithFixedDelay(this::purgeExpired, PURGE_PERIOD_MILLIS, PURGE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        } else
+            this.housekeeper = null;
+    }
+
+    /**
+     * This method creates the {@link UserSessions} of the application from the parameters of the {@link ServletContext}.
+     * The {@link ConnectionPool} must already exist if the sessions are kept in the database.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link UserSessions}.
+     * @throws IllegalStateException if the mode or the store are invalid or the token mode has no secret.
+     */
+    public static UserSessions create(ServletContext context) {
+        AuthMode mode = AuthMode.fromValue(ContextParameters.AUTH_MODE.getString(context, AuthMode.SESSION.getValue()));
+        if (mode == null)
+            throw new IllegalStateException("Invalid authentication mode");
+        String secret = ContextParameters.AUTH_TOKEN_SECRET.getString(context, null);
+        if (mode == AuthMode.TOKEN && (secret == null || secret.length() < 32))
+            throw new IllegalStateException("The token authentication needs a secret of at least 32 characters");
+        SessionStore store = mode == AuthMode.STORE ? createStore(context) : null;
+        return new UserSessions(mode, secret == null ? null : secret.getBytes(StandardCharsets.UTF_8),
+                ContextParameters.AUTH_TOKEN_TTL.getLong(context, 86_400), store,
+                ContextParameters.SESSION_TIMEOUT.getLong(context, 1800));
+    }
+
+    /**
+     * This method returns the {@link UserSessions} of the application.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link UserSessions}.
+     */
+    public static UserSessions getInstance(ServletContext context) {
+        return (UserSessions) context.getAttribute(ContextAttributes.USER_SESSIONS.getValue());
+    }
+
+    /**
+     * This method returns the logged user of a request, without creating a session.
+     * A session of the store that cannot be read is logged and treated as missing.
+     *
+     * @param request the {@link HttpServletRequest}.
+     * @return the logged {@link User} or null if the request is not authenticated.
+     */
+    public User getUser(HttpServletRequest request) {
+        User user = (User) request.getAttribute(USER_ATTRIBUTE);
+        if (user != null)
+            return user;
+        switch (mode) {
+            case SESSION -> {
+                HttpSession session = request.getSession(false);
+                user = session == null ? null : (User) session.getAttribute(USER_ATTRIBUTE);
+            }
+            case TOKEN -> user = readToken(request);
+            case STORE -> user = readSession(request);
+        }
+        if (user != null)
+            request.setAttribute(USER_ATTRIBUTE, user);
+        return user;
+    }
+
+    /**
+     * This method remembers the user that has just logged in.
+     *
+     * @param request  the {@link HttpServletRequest}.
+     * @param response the {@link HttpServletResponse}.
+     * @param user     the logged {@link User}.
+     * @throws SQLException if the session cannot be saved in the store.
+     */
+    public void login(HttpServletRequest request, HttpServletResponse response, User user) throws SQLException {
+        switch (mode) {
+            case SESSION -> {
+                // A new id prevents the fixation of a session created before the login.
+                if (request.getSession(false) != null)
+                    request.changeSessionId();
+                request.getSession().setAttribute(USER_ATTRIBUTE, user);
+            }
+            case TOKEN -> setCookie(request, response, TOKEN_COOKIE,
+                    writeToken(user, System.currentTimeMillis() / 1000 + tokenTimeToLive), tokenTimeToLive);
+            case STORE -> {
+                String previous = getCookie(request, SESSION_COOKIE);
+                if (previous != null)
+                    store.delete(hash(previous));
+                byte[] bytes = new byte[SESSION_ID_LENGTH];
+                random.nextBytes(bytes);
+                String id = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+                store.create(hash(id), user, System.currentTimeMillis() / 1000 + sessionTimeout);
+                setCookie(request, response, SESSION_COOKIE, id, -1);
+            }
+        }
+        request.setAttribute(USER_ATTRIBUTE, user);
+    }
+
+    /**
+     * This method forgets the logged user of a request.
+     *
+     * @param request  the {@link HttpServletRequest}.
+     * @param response the {@link HttpServletResponse}.
+     */
+    public void logout(HttpServletRequest request, HttpServletResponse response) {
+        HttpSession session = request.getSession(false);
+        if (session != null)
+            session.invalidate();
+        if (mode == AuthMode.TOKEN)
+            setCookie(request, response, TOKEN_COOKIE, "", 0);
+        else if (mode == AuthMode.STORE) {
+            String id = getCookie(request, SESSION_COOKIE);
+            if (id != null) {
+                try {
+                    store.delete(hash(id));
+                } catch (SQLException e) {
+                    logger.warn("Cannot delete a session from the store", e);
+                }
+                setCookie(request, response, SESSION_COOKIE, "", 0);
+            }
+        }
+        request.removeAttribute(USER_ATTRIBUTE);
+    }
+
+    /**
+     * This method tells if the requests of a user can be served by any instance of the application, as with the
+     * {@link AuthMode#TOKEN} mode or a {@link SessionStore} in the database, instead of the one that logged them in.
+     *
+     * @return true if the logged users are not bound to this instance.
+     */
+    public boolean isShared() {
+        return mode == AuthMode.TOKEN || (store != null && !(store instanceof MemorySessionStore));
+    }
+
+    /**
+     * @return the {@link SessionStore}, null if the mode is not {@link AuthMode#STORE}.
+     */
+    public SessionStore getStore() {
+        return store;
+    }
+
+    /**
+     * Stops the removal of the expired sessions and closes the {@link SessionStore}.
+     */
+    @Override
+    public void close() {
+        if (housekeeper != null)
+            housekeeper.shutdownNow();
+        if (store != null)
+            store.close();
+    }
+
+    /**
+     * Creates the {@link SessionStore} configured in the {@link ServletContext}.
+     *
+     * @param context the {@link ServletContext} of the application.
+     * @return the {@link SessionStore}.
+     * @throws IllegalStateException if the type of the store is invalid.
+     */
+    private static SessionStore createStore(ServletContext context) {
+        SessionStoreType type = SessionStoreType.fromValue(ContextParameters.SESSION_STORE.getString(context,
+                SessionStoreType.MEMORY.getValue()));
+        if (type == null)
+            throw new IllegalStateException("Invalid session store");
+        return switch (type) {
+            case MEMORY -> new MemorySessionStore();
+            case JDBC -> new CachedSessionStore(new JdbcSessionStore(ConnectionHandler.getConnectionPool(context)),
+                    ContextParameters.SESSION_CACHE_SIZE.getInt(context, 10_000),
+                    ContextParameters.SESSION_CACHE_TTL.getLong(context, 5_000),
+                    ContextParameters.SESSION_WRITE_BEHIND_DELAY.getLong(context, 1_000));
+        };
+    }
+
+    /**
+     * Reads the session of the store identified by the cookie of a request, extending it.
+     *
+     * @param request the {@link HttpServletRequest}.
+     * @return the {@link User} of the session or null if it is missing, expired or cannot be read.
+     */
+    private User readSession(HttpServletRequest request) {
+        String cookie = getCookie(request, SESSION_COOKIE);
+        if (cookie == null)
+            return null;
+        String id = hash(cookie);
+        long now = System.currentTimeMillis() / 1000;
+        try {
+            StoredSession session = store.get(id, now);
+            if (session == null)
+                return null;
+            if (session.expiresAt() < now + sessionTimeout - EXTENSION_GRANULARITY)
+                store.extend(id, now + sessionTimeout);
+            return session.user();
+        } catch (SQLException e) {
+            logger.warn("Cannot read a session from the store", e);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the expired sessions of the store.
+     */
+    private void purgeExpired() {
+        try {
+            store.purgeExpired(System.currentTimeMillis() / 1000);
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Cannot remove the expired sessions", e);
+        }
+    }
+
+    /**
+     * Reads and verifies the token of a request.
+     *
+     * @param request the {@link HttpServletRequest}.
+     * @return the {@link User} of the token or null if it is missing, forged or expired.
+     */
+    private User readToken(HttpServletRequest request) {
+        String value = getCookie(request, TOKEN_COOKIE);
+        if (value == null)
+            return null;
+        int dot = value.indexOf('.');
+        if (dot < 0)
+            return null;
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(value.substring(0, dot));
+            byte[] signature = Base64.getUrlDecoder().decode(value.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature))
+                return null;
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            if (input.readLong() < System.currentTimeMillis() / 1000)
+                return null;
+            return UserSerializer.read(input);
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the signed token of a user.
+     *
+     * @param user      the {@link User}.
+     * @param expiresAt the time in seconds after which the token is no longer valid.
+     * @return the token, as the value of a cookie.
+     */
+    private String writeToken(User user, long expiresAt) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeLong(expiresAt);
+            UserSerializer.write(user, output);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * @param payload the payload of a token.
+     * @return the HMAC of the payload.
+     */
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param id the id of a session, as sent by the client.
+     * @return the id under which the session is kept by the store.
+     */
+    private static String hash(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param request the {@link HttpServletRequest}.
+     * @param name    the name of a cookie.
+     * @return the value of the cookie or null if the request does not have it.
+     */
+    private static String getCookie(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null)
+            return null;
+        for (Cookie cookie : cookies)
+            if (cookie.getName().equals(name) && !cookie.getValue().isEmpty())
+                return cookie.getValue();
+        return null;
+    }
+
+    /**
+     * Sets a cookie. The header is written by hand, since {@link Cookie} cannot set the SameSite attribute.
+     *
+     * @param request  the {@link HttpServletRequest}.
+     * @param response the {@link HttpServletResponse}.
+     * @param name     the name of the cookie.
+     * @param value    the value of the cookie.
+     * @param maxAge   the time in seconds the cookie is kept by the client, 0 to delete it,
+     *                 negative to keep it until the browser is closed.
+     */
+    private static void setCookie(HttpServletRequest request, HttpServletResponse response, String name, String value,
+                                  long maxAge) {
+        String path = request.getContextPath().isEmpty() ? "/" : request.getContextPath();
+        response.addHeader("Set-Cookie", name + "=" + value + "; Path=" + path + (maxAge >= 0 ? "; Max-Age=" + maxAge : "")
+                + "; HttpOnly; SameSite=Lax" + (request.isSecure() ? "; Secure" : ""));
+    }
+}
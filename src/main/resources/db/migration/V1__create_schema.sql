@@ -0,0 +1,49 @@
+-- Tables used by the DAOs. IF NOT EXISTS keeps databases created before the migrations were introduced.
+
+CREATE TABLE IF NOT EXISTS `user`
+(
+    `iduser`   INT          NOT NULL AUTO_INCREMENT,
+    `username` VARCHAR(20)  NOT NULL,
+    `email`    VARCHAR(50)  NOT NULL,
+    `password` VARCHAR(255) NOT NULL,
+    `name`     VARCHAR(20)  NOT NULL,
+    `surname`  VARCHAR(20)  NOT NULL,
+    PRIMARY KEY (`iduser`),
+    UNIQUE KEY `username_UNIQUE` (`username`),
+    UNIQUE KEY `email_UNIQUE` (`email`)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS `folder`
+(
+    `idfolder`     INT         NOT NULL AUTO_INCREMENT,
+    `name`         VARCHAR(50) NOT NULL,
+    `creationDate` DATE        NOT NULL,
+    `user_iduser`  INT         NOT NULL,
+    PRIMARY KEY (`idfolder`),
+    CONSTRAINT `fk_folder_user` FOREIGN KEY (`user_iduser`) REFERENCES `user` (`iduser`)
+        ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS `subfolder`
+(
+    `idsubfolder`     INT         NOT NULL AUTO_INCREMENT,
+    `name`            VARCHAR(50) NOT NULL,
+    `creationDate`    DATE        NOT NULL,
+    `folder_idfolder` INT         NOT NULL,
+    PRIMARY KEY (`idsubfolder`),
+    CONSTRAINT `fk_subfolder_folder` FOREIGN KEY (`folder_idfolder`) REFERENCES `folder` (`idfolder`)
+        ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS `document`
+(
+    `iddocument`            INT          NOT NULL AUTO_INCREMENT,
+    `name`                  VARCHAR(50)  NOT NULL,
+    `format`                VARCHAR(10)  NOT NULL,
+    `summary`               VARCHAR(200) NOT NULL,
+    `creationDate`          DATE         NOT NULL,
+    `subfolder_idsubfolder` INT          NOT NULL,
+    PRIMARY KEY (`iddocument`),
+    CONSTRAINT `fk_document_subfolder` FOREIGN KEY (`subfolder_idsubfolder`) REFERENCES `subfolder` (`idsubfolder`)
+        ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE = InnoDB;
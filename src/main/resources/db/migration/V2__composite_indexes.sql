@@ -0,0 +1,16 @@
+-- Hashed passwords do not fit the column of databases created before the migrations.
+ALTER TABLE `user`
+    MODIFY `password` VARCHAR(255) NOT NULL;
+
+-- FolderDAO.getFoldersWithSubFolders, FolderDAO.checkOwner and FolderDAO.getOwnedFolder filter folders by owner.
+-- InnoDB appends the primary key to secondary indexes, so the ORDER BY idfolder is read from the index.
+CREATE INDEX `folder_owner_idx` ON `folder` (`user_iduser`, `idfolder`);
+
+-- The subfolders of a folder, in the order of the folder tree.
+CREATE INDEX `subfolder_folder_idx` ON `subfolder` (`folder_idfolder`, `idsubfolder`);
+
+-- SubFolderDAO pages sorted by creation date (oldest and newest first) and keyset anchors.
+CREATE INDEX `document_subfolder_date_idx` ON `document` (`subfolder_idsubfolder`, `creationDate`, `iddocument`);
+
+-- SubFolderDAO pages sorted by name.
+CREATE INDEX `document_subfolder_name_idx` ON `document` (`subfolder_idsubfolder`, `name`, `iddocument`);
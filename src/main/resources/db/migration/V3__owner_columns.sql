@@ -0,0 +1,28 @@
+-- The owner of subfolders and documents is copied from their folder, so ownership checks read a single row
+-- instead of joining up to the folder. The DAOs keep it consistent when subfolders and documents are created or moved.
+ALTER TABLE `subfolder`
+    ADD COLUMN `user_iduser` INT NULL;
+
+ALTER TABLE `document`
+    ADD COLUMN `user_iduser` INT NULL;
+
+-- Backfill of the rows created before the column existed.
+UPDATE `subfolder` s INNER JOIN `folder` f ON s.`folder_idfolder` = f.`idfolder`
+SET s.`user_iduser` = f.`user_iduser`
+WHERE s.`user_iduser` IS NULL;
+
+UPDATE `document` d INNER JOIN `subfolder` s ON d.`subfolder_idsubfolder` = s.`idsubfolder`
+SET d.`user_iduser` = s.`user_iduser`
+WHERE d.`user_iduser` IS NULL;
+
+ALTER TABLE `subfolder`
+    MODIFY `user_iduser` INT NOT NULL,
+    ADD INDEX `subfolder_owner_idx` (`user_iduser`, `idsubfolder`),
+    ADD CONSTRAINT `fk_subfolder_user` FOREIGN KEY (`user_iduser`) REFERENCES `user` (`iduser`)
+        ON DELETE CASCADE ON UPDATE CASCADE;
+
+ALTER TABLE `document`
+    MODIFY `user_iduser` INT NOT NULL,
+    ADD INDEX `document_owner_idx` (`user_iduser`, `iddocument`),
+    ADD CONSTRAINT `fk_document_user` FOREIGN KEY (`user_iduser`) REFERENCES `user` (`iduser`)
+        ON DELETE CASCADE ON UPDATE CASCADE;
@@ -0,0 +1,10 @@
+-- Sessions of the logged users shared by all the instances of the application.
+-- The id is the hash of the session cookie, so the table alone cannot be used to impersonate a user.
+CREATE TABLE IF NOT EXISTS `user_session`
+(
+    `id`         CHAR(43) CHARACTER SET ascii COLLATE ascii_bin NOT NULL,
+    `data`       VARBINARY(1024)                                 NOT NULL,
+    `expires_at` BIGINT                                          NOT NULL,
+    PRIMARY KEY (`id`),
+    INDEX `user_session_expires_idx` (`expires_at`)
+);
@@ -0,0 +1,77 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.beans.Folder;
+import it.polimi.tiw.beans.SubFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures how {@link FolderDAO#getFoldersWithSubFolders(int)} assembles the tree of a user
+ * from the joined rows, from 10 to 100k rows. The rows are served from memory, so only the assembly is measured.
+ * <p>
+ * The score is the time to build the whole tree: divided by the rows it stays flat as they grow, since the tree
+ * is built in a single pass.
+ * Run it with {@code mvn -Pbenchmarks test -Djmh.args=FolderTreeBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderTreeBenchmark {
+
+    /**
+     * The number of joined rows, one per subFolder.
+     */
+    @Param({"10", "1000", "10000", "100000"})
+    private int rows;
+
+    /**
+     * The number of subFolders of each folder.
+     */
+    @Param({"10"})
+    private int subFoldersPerFolder;
+
+    private FolderDAO folderDAO;
+
+    /**
+     * Builds the rows of the join, ordered by folder and subFolder as the query returns them.
+     */
+    @Setup
+    public void setUp() {
+        Date date = new Date(System.currentTimeMillis());
+        Object[][] values = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            int folderId = i / subFoldersPerFolder + 1;
+            values[i] = new Object[]{folderId, "folder" + folderId, date, 1, i + 1, "subfolder" + (i + 1), date, folderId};
+        }
+        String[] labels = {"idfolder", "name", "creationDate", "user_iduser",
+                "idsubfolder", "name", "creationDate", "folder_idfolder"};
+        folderDAO = new FolderDAO(new Rows(labels, values).connection());
+    }
+
+    /**
+     * @return the tree, so that its assembly is not optimized away.
+     * @throws SQLException never, the rows are in memory.
+     */
+    @Benchmark
+    public Map<Folder, List<SubFolder>> assembleTree() throws SQLException {
+        return folderDAO.getFoldersWithSubFolders(1);
+    }
+}
@@ -0,0 +1,93 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.beans.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the {@link RowMapper}s of {@link Mappings} over a result set of 100k documents,
+ * against mapping the same rows by column label as the DAOs did before.
+ * The rows are served from memory, so only the mapping is measured.
+ * Run it with {@code mvn -Pbenchmarks test -Djmh.args=MappingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    /**
+     * Maps a {@link Document} looking up each column by label.
+     */
+    private static final RowMapper<Document> DOCUMENT_BY_LABEL = resultSet -> new Document(resultSet.getInt("iddocument"),
+            resultSet.getString("name"),
+            resultSet.getString("format"),
+            resultSet.getString("summary"),
+            resultSet.getDate("creationDate"),
+            resultSet.getInt("subfolder_idsubfolder"));
+
+    @Param({"100000"})
+    private int rows;
+
+    private Rows documents;
+
+    /**
+     * Builds the rows of {@link Mappings#DOCUMENT_COLUMNS}, with summaries of the maximum length.
+     */
+    @Setup
+    public void setUp() {
+        Date date = new Date(System.currentTimeMillis());
+        String summary = "s".repeat(200);
+        Object[][] values = new Object[rows][];
+        for (int i = 0; i < rows; i++)
+            values[i] = new Object[]{i + 1, "document" + i, "txt", summary, date, i / 100 + 1};
+        documents = new Rows(Mappings.DOCUMENT_COLUMNS.split(",\\s*"), values);
+    }
+
+    /**
+     * Maps the rows with {@link Mappings#DOCUMENT}, by position.
+     */
+    @Benchmark
+    public void byPosition(Blackhole blackhole) throws SQLException {
+        map(Mappings.DOCUMENT, blackhole);
+    }
+
+    /**
+     * Maps the rows looking up each column by label.
+     */
+    @Benchmark
+    public void byLabel(Blackhole blackhole) throws SQLException {
+        map(DOCUMENT_BY_LABEL, blackhole);
+    }
+
+    /**
+     * Maps every row of the result set.
+     *
+     * @param mapper    the {@link RowMapper} to use.
+     * @param blackhole the {@link Blackhole} that consumes the beans.
+     * @throws SQLException never, the rows are in memory.
+     */
+    private void map(RowMapper<Document> mapper, Blackhole blackhole) throws SQLException {
+        try (ResultSet resultSet = documents.resultSet()) {
+            while (resultSet.next())
+                blackhole.consume(mapper.map(resultSet));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package it.polimi.tiw.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class serves rows held in memory through the JDBC interfaces, so that the DAOs and the {@link RowMapper}s
+ * can be measured without a database.
+ * <p>
+ * Only the methods used by the DAOs are implemented. Columns are found by label case-insensitively,
+ * as the driver does.
+ */
+final class Rows {
+
+    private final String[] labels;
+    private final Object[][] rows;
+    private final Map<String, Integer> columns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * Constructor.
+     *
+     * @param labels the labels of the columns.
+     * @param rows   the rows, each with a value per column.
+     */
+    Rows(String[] labels, Object[][] rows) {
+        this.labels = labels;
+        this.rows = rows;
+        for (int i = labels.length - 1; i >= 0; i--)
+            columns.put(labels[i], i + 1);
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    int size() {
+        return rows.length;
+    }
+
+    /**
+     * @return a {@link Connection} whose statements all return these rows.
+     */
+    Connection connection() {
+        return proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> statement();
+            case "close" -> null;
+            case "isClosed" -> false;
+            default -> throw unsupported(method.getName());
+        });
+    }
+
+    /**
+     * @return a {@link ResultSet} positioned before the first row.
+     */
+    ResultSet resultSet() {
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    return ++row[0] < rows.length;
+                case "wasNull":
+                    return wasNull[0];
+                case "findColumn":
+                    return column((String) args[0]);
+                case "close":
+                    return null;
+                case "getInt", "getString", "getDate":
+                    Object value = rows[row[0]][(args[0] instanceof String label ? column(label) : (Integer) args[0]) - 1];
+                    wasNull[0] = value == null;
+                    if (method.getName().equals("getInt"))
+                        return value == null ? 0 : value;
+                    return value;
+                default:
+                    throw unsupported(method.getName());
+            }
+        });
+    }
+
+    /**
+     * @return a {@link PreparedStatement} that ignores its parameters and returns these rows.
+     */
+    private PreparedStatement statement() {
+        return proxy(PreparedStatement.class, (proxy, method, args) -> switch (method.getName()) {
+            case "executeQuery" -> resultSet();
+            case "setInt", "setString", "setFetchSize", "close" -> null;
+            default -> throw unsupported(method.getName());
+        });
+    }
+
+    private int column(String label) throws SQLException {
+        Integer column = columns.get(label);
+        if (column == null)
+            throw new SQLException("Column '" + label + "' not found in " + String.join(", ", labels));
+        return column;
+    }
+
+    private static UnsupportedOperationException unsupported(String method) {
+        return new UnsupportedOperationException(method + " is not supported by the in-memory rows");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(Rows.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,161 @@
+package it.polimi.tiw.dao;
+
+import it.polimi.tiw.utils.InputValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the validators of the user input against the regular expressions they replaced,
+ * which were matched with {@link String#matches(String)} and so compiled their pattern on every call.
+ * Each validator is measured on a valid input, an invalid one and one far longer than allowed.
+ * <p>
+ * The allocations per call are reported by the gc profiler:
+ * {@code mvn -Pbenchmarks test -Djmh.args="ValidationBenchmark -prof gc"}, see {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final String EMAIL_REGEX = "^(([^<>()\\[\\]\\\\.,;:\\s@\"]+(\\.[^<>()\\[\\]\\\\.,;:\\s@\"]+)*)|(\".+\"))@((\\[\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}])|(([a-zA-Z\\-\\d]+\\.)+[a-zA-Z]{2,}))$";
+    private static final String PASSWORD_REGEX = "^(?=.*[A-Za-z])(?=.*\\d)[A-Za-z\\d@$!%*#?&.]{8,}$";
+    private static final String USERNAME_REGEX = "[a-zA-Z\\d]{3,20}$";
+    private static final String NAME_REGEX = "[a-zA-Z\\s']{3,20}$";
+    private static final String FORMAT_REGEX = "^[^\\s.]{1,10}$";
+    private static final String INT_REGEX = "-?\\d+";
+
+    /**
+     * The response of {@link InputValidator#isInt(String, HttpServletResponse)}, whose errors are ignored.
+     */
+    private static final HttpServletResponse RESPONSE = (HttpServletResponse) Proxy.newProxyInstance(
+            ValidationBenchmark.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> null);
+
+    /**
+     * The kind of the inputs: {@code valid}, {@code invalid} or {@code tooLong}.
+     */
+    @Param({"valid", "invalid", "tooLong"})
+    private String input;
+
+    private String username;
+    private String email;
+    private String password;
+    private String name;
+    private String format;
+    private String integer;
+
+    /**
+     * Chooses the inputs of the kind.
+     */
+    @Setup
+    public void setUp() {
+        String longText = "a".repeat(500);
+        switch (input) {
+            case "valid" -> {
+                username = "giovanni99";
+                email = "giovanni.rossi@mail.polimi.it";
+                password = "Password123!";
+                name = "Mario Rossi";
+                format = "pdf";
+                integer = "123456";
+            }
+            case "invalid" -> {
+                username = "gio.vanni";
+                email = "giovanni.rossi@mail";
+                password = "password!";
+                name = "Mario99";
+                format = "tar.gz";
+                integer = "123a56";
+            }
+            case "tooLong" -> {
+                username = longText;
+                email = longText + "@mail.polimi.it";
+                password = "Password1" + longText;
+                name = longText;
+                format = longText;
+                integer = "9".repeat(500);
+            }
+            default -> throw new IllegalArgumentException("Unknown input: " + input);
+        }
+    }
+
+    @Benchmark
+    public boolean usernameRegex() {
+        return username != null && username.matches(USERNAME_REGEX);
+    }
+
+    @Benchmark
+    public boolean usernameScanner() {
+        return UserDAO.isValidUsername(username);
+    }
+
+    @Benchmark
+    public boolean emailRegex() {
+        return email != null && email.matches(EMAIL_REGEX) && email.length() <= 50;
+    }
+
+    @Benchmark
+    public boolean emailScanner() {
+        return UserDAO.isValidEmail(email);
+    }
+
+    @Benchmark
+    public boolean passwordRegex() {
+        return password.matches(PASSWORD_REGEX) && password.length() <= 50;
+    }
+
+    @Benchmark
+    public boolean passwordScanner() {
+        return UserDAO.isValidPassword(password);
+    }
+
+    @Benchmark
+    public boolean nameRegex() {
+        return name != null && name.matches(NAME_REGEX);
+    }
+
+    @Benchmark
+    public boolean nameScanner() {
+        return UserDAO.isValidName(name);
+    }
+
+    @Benchmark
+    public boolean formatRegex() {
+        return format != null && format.length() > 0 && format.length() <= 10 && format.matches(FORMAT_REGEX);
+    }
+
+    @Benchmark
+    public boolean formatScanner() {
+        return DocumentDAO.checkFormat(format);
+    }
+
+    @Benchmark
+    public boolean intRegex() throws IOException {
+        if (!integer.matches(INT_REGEX)) {
+            RESPONSE.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return false;
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean intScanner() throws IOException {
+        return InputValidator.isInt(integer, RESPONSE);
+    }
+}
@@ -0,0 +1,79 @@
+package it.polimi.tiw.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the logins per second that {@link PasswordHasher} verifies at a given cost.
+ * <p>
+ * {@link #verifyOnOneCore()} verifies one password at a time, so its score is the login throughput of a core.
+ * {@link #verifyOnAllCores()} keeps every hashing thread busy: its score divided by the cores shows how well
+ * the hashing executor scales. The cost of the deployment is set with {@code -p iterations=...}, e.g.
+ * {@code mvn -Pbenchmarks test -Djmh.args="LoginBenchmark -p iterations=120000,240000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    /**
+     * The PBKDF2 iterations, the default of {@code passwordHashIterations}.
+     */
+    @Param({"120000"})
+    private int iterations;
+
+    private PasswordHasher passwordHasher;
+    private String stored;
+
+    /**
+     * Starts a hasher with a thread per core and hashes the password to verify.
+     */
+    @Setup
+    public void setUp() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        passwordHasher = new PasswordHasher(iterations, cores, cores, TimeUnit.MINUTES.toMillis(1));
+        stored = passwordHasher.hash("password");
+    }
+
+    /**
+     * Stops the hashing threads.
+     */
+    @TearDown
+    public void tearDown() {
+        passwordHasher.close();
+    }
+
+    /**
+     * @return the result of the verification, so that it is not optimized away.
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean verifyOnOneCore() {
+        return passwordHasher.verify("password", stored);
+    }
+
+    /**
+     * @return the result of the verification, so that it is not optimized away.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyOnAllCores() {
+        return passwordHasher.verify("password", stored);
+    }
+}